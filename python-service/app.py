@@ -6,7 +6,7 @@ AI Playwright Testing Service - USER-FRIENDLY BUGS & RECOMMENDATIONS
 - Steps to reproduce and fix suggestions
 """
 
-import os, json, asyncio, tempfile, subprocess, uuid, base64, shutil, re
+import os, json, asyncio, tempfile, subprocess, uuid, base64, shutil, re, signal, threading
 from typing import Dict, Optional, List
 from datetime import datetime, timezone
 from flask import Flask, request, jsonify
@@ -23,6 +23,12 @@ GEMINI_API_KEY = os.getenv("GEMINI_API_KEY", "your-gemini-api-key-here")
 GEMINI_MODEL = os.getenv("GEMINI_MODEL", "gemini-2.0-flash-exp")
 genai.configure(api_key=GEMINI_API_KEY)
 
+# Playwright processes of in-progress /execute-tests calls, by the caller's X-Run-Id,
+# so /cancel-tests can stop them
+RUNNING_TESTS: Dict[str, subprocess.Popen] = {}
+CANCELLED_RUNS = set()
+RUNNING_LOCK = threading.Lock()
+
 
 # -----------------------------------------------------------
 # Playwright Test Generator
@@ -769,7 +775,19 @@ Return ONLY the JSON array."""
         }
 
     @staticmethod
-    def run_script(script_content: str, test_url: str = "", page_info: Optional[Dict] = None) -> Dict:
+    def _kill(proc: subprocess.Popen):
+        """Kill a test run with everything it started"""
+        try:
+            if hasattr(os, "killpg"):
+                os.killpg(proc.pid, signal.SIGKILL)
+            else:
+                proc.kill()
+        except ProcessLookupError:
+            pass
+
+    @staticmethod
+    def run_script(script_content: str, test_url: str = "", page_info: Optional[Dict] = None,
+                   timeout: int = 300, run_id: Optional[str] = None) -> Dict:
         """Execute Playwright test script and generate user-friendly bugs & recommendations"""
         script = PlaywrightTestExecutor._clean_script(script_content)
         tmp_file = os.path.join(tempfile.gettempdir(), f"ai_test_{uuid.uuid4().hex[:6]}.spec.js")
@@ -809,18 +827,48 @@ test.afterEach(async ({{ page }}, testInfo) => {{
             cmd = f'npx playwright test "{tmp_file}" --reporter=json --workers=1'
             logs.append(f"⚙️ Executing: {cmd}")
 
-            proc = subprocess.run(cmd, capture_output=True, text=True, shell=True, env=env, timeout=300)
+            # Own process group, so a timeout or cancel stops the browser too and not just the shell
+            proc = subprocess.Popen(cmd, stdout=subprocess.PIPE, stderr=subprocess.PIPE, text=True,
+                                    shell=True, env=env, start_new_session=True)
+            if run_id:
+                with RUNNING_LOCK:
+                    RUNNING_TESTS[run_id] = proc
+            try:
+                stdout, stderr = proc.communicate(timeout=timeout)
+            except subprocess.TimeoutExpired:
+                PlaywrightTestExecutor._kill(proc)
+                proc.communicate()
+                raise
+            finally:
+                cancelled = False
+                if run_id:
+                    with RUNNING_LOCK:
+                        RUNNING_TESTS.pop(run_id, None)
+                        cancelled = run_id in CANCELLED_RUNS
+                        CANCELLED_RUNS.discard(run_id)
             duration = PlaywrightTestExecutor._format_duration(
                 int((datetime.now() - start).total_seconds() * 1000)
             )
 
-            if proc.stderr:
-                stderr_lines = proc.stderr.splitlines()[:6]
+            if cancelled:
+                logs.append("🛑 Test run cancelled by the caller")
+                return {
+                    "success": False,
+                    "status": "cancelled",
+                    "logs": logs,
+                    "bugs": [],
+                    "recommendations": [],
+                    "duration": duration,
+                    "screenshots": []
+                }
+
+            if stderr:
+                stderr_lines = stderr.splitlines()[:6]
                 if stderr_lines:
                     logs.append("⚠️ STDERR:")
                     logs.extend(stderr_lines)
 
-            result = PlaywrightTestExecutor._extract_json(proc.stdout)
+            result = PlaywrightTestExecutor._extract_json(stdout)
             if result:
                 for s in result.get("suites", []):
                     for spec in s.get("specs", []):
@@ -836,7 +884,7 @@ test.afterEach(async ({{ page }}, testInfo) => {{
                                     failures.append({"title": title, "error": msg})
             else:
                 logs.append("❌ Could not parse Playwright JSON output.")
-                logs.append(proc.stdout[:800])
+                logs.append(stdout[:800])
 
             # Collect screenshots
             try:
@@ -902,8 +950,8 @@ test.afterEach(async ({{ page }}, testInfo) => {{
             }
 
         except subprocess.TimeoutExpired:
-            logs.append("❌ Test execution timeout (300s limit)")
-            timeout_failure = [{"title": "Test Timeout", "error": "Execution exceeded 300s limit"}]
+            logs.append(f"❌ Test execution timeout ({timeout}s limit)")
+            timeout_failure = [{"title": "Test Timeout", "error": f"Execution exceeded {timeout}s limit"}]
 
             bugs = [{
                 "bugId": f"bug_{uuid.uuid4().hex[:12]}",
@@ -1010,10 +1058,35 @@ def execute_tests():
     if not script:
         return jsonify({"success": False, "error": "Missing 'test_script' parameter"}), 400
 
+    # The caller's remaining budget (X-Request-Timeout, whole seconds); keep a few seconds
+    # to report back before it gives up on us
+    timeout = 300
+    budget = request.headers.get("X-Request-Timeout", "")
+    if budget.isdigit():
+        timeout = min(timeout, max(1, int(budget) - 5))
+
     executor = PlaywrightTestExecutor()
-    result = executor.run_script(script, url, page_info)
+    result = executor.run_script(script, url, page_info, timeout, request.headers.get("X-Run-Id"))
 
-    return jsonify(result), (200 if result.get("success") else 500)
+    # Failed, timed-out and cancelled tests are results like any other (success false, with their
+    # bugs and logs); only a fault of this executor itself is a 500
+    return jsonify(result), (500 if result.get("status") == "error" else 200)
+
+
+@app.route("/cancel-tests", methods=["POST"])
+def cancel_tests():
+    data = request.get_json(silent=True) or {}
+    run_id = data.get("run_id")
+
+    with RUNNING_LOCK:
+        proc = RUNNING_TESTS.get(run_id)
+        if proc is not None:
+            CANCELLED_RUNS.add(run_id)
+    if proc is None:
+        return jsonify({"success": False, "error": "No test run in progress with that run_id"}), 404
+
+    PlaywrightTestExecutor._kill(proc)
+    return jsonify({"success": True, "run_id": run_id})
 
 
 @app.route("/health", methods=["GET"])
@@ -1054,6 +1127,13 @@ def index():
                 },
                 "returns": "Test results + USER-FRIENDLY bugs + AI recommendations"
             },
+            "/cancel-tests": {
+                "method": "POST",
+                "body": {
+                    "run_id": "X-Run-Id header of the /execute-tests call to stop"
+                },
+                "returns": "Whether a running test was stopped"
+            },
             "/health": {
                 "method": "GET",
                 "returns": "Service health status"
@@ -0,0 +1,153 @@
+package com.nikhilpanwar.Ai_saas_testing.Job;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drain throughput of the test_jobs queue with 1, 2 and 4 worker nodes against a local Postgres.
+ *
+ * Every node gets {@code workersPerNode} workers, each with its own connection, running the same
+ * claim / finish statements as TestJobRepository. The pipeline itself is replaced by a fixed
+ * sleep, so the score shows how well SKIP LOCKED claiming scales out. Score is the time to drain
+ * {@code jobs} queued jobs; jobs/sec is {@code jobs / score}.
+ *
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="JobQueueBenchmark -jvmArgsAppend -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/testee"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JobQueueBenchmark {
+
+    private static final String TABLE = "bench_test_jobs";
+
+    // Same statements as TestJobRepository.claim / finish, against the benchmark table
+    private static final String CLAIM_SQL = """
+            UPDATE bench_test_jobs
+            SET status = 'running', lease_owner = ?,
+                lease_expires_at = now() + (60 * interval '1 second'),
+                attempts = attempts + 1, updated_at = now()
+            WHERE id IN (
+                SELECT id FROM bench_test_jobs
+                WHERE status = 'queued'
+                   OR (status = 'running' AND lease_expires_at < now())
+                ORDER BY created_at
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id
+            """;
+    private static final String FINISH_SQL = """
+            UPDATE bench_test_jobs
+            SET status = 'completed', lease_owner = NULL, lease_expires_at = NULL, updated_at = now()
+            WHERE id = ? AND lease_owner = ?
+            """;
+
+    @Param({"1", "2", "4"})
+    public int nodes;
+
+    @Param({"4"})
+    public int workersPerNode;
+
+    @Param({"400"})
+    public int jobs;
+
+    @Param({"20"})
+    public int pipelineMs;
+
+    private Connection admin;
+    private final List<Connection> workerConnections = new ArrayList<>();
+    private ExecutorService threads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        admin = connect();
+        try (Statement st = admin.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + TABLE);
+            st.execute("CREATE TABLE " + TABLE + " (id varchar(255) PRIMARY KEY, test_id varchar(255) NOT NULL UNIQUE, "
+                    + "payload jsonb NOT NULL, status varchar(20) NOT NULL, attempts int NOT NULL, "
+                    + "lease_owner varchar(255), lease_expires_at timestamp(6), last_error text, "
+                    + "created_at timestamp(6) NOT NULL, updated_at timestamp(6))");
+            st.execute("CREATE INDEX ON " + TABLE + " (status, created_at)");
+        }
+        int workers = nodes * workersPerNode;
+        for (int i = 0; i < workers; i++) {
+            workerConnections.add(connect());
+        }
+        threads = Executors.newFixedThreadPool(workers);
+    }
+
+    @Setup(Level.Invocation)
+    public void enqueue() throws SQLException {
+        try (Statement st = admin.createStatement()) {
+            st.execute("TRUNCATE " + TABLE);
+            st.execute("INSERT INTO " + TABLE + " (id, test_id, payload, status, attempts, created_at) "
+                    + "SELECT 'job-' || g, 'test-' || g, '{\"url\":\"https://example.com\"}', 'queued', 0, "
+                    + "now() + g * interval '1 microsecond' FROM generate_series(1, " + jobs + ") g");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        threads.shutdownNow();
+        for (Connection c : workerConnections) c.close();
+        try (Statement st = admin.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + TABLE);
+        }
+        admin.close();
+    }
+
+    @Benchmark
+    public int drainQueue() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(workerConnections.size());
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < workerConnections.size(); i++) {
+            Connection connection = workerConnections.get(i);
+            String owner = "node-" + (i / workersPerNode);
+            threads.execute(() -> {
+                try (PreparedStatement claim = connection.prepareStatement(CLAIM_SQL);
+                     PreparedStatement finish = connection.prepareStatement(FINISH_SQL)) {
+                    while (true) {
+                        claim.setString(1, owner);
+                        String id;
+                        try (ResultSet rs = claim.executeQuery()) {
+                            if (!rs.next()) break; // queue drained
+                            id = rs.getString(1);
+                        }
+                        Thread.sleep(pipelineMs);
+                        finish.setString(1, id);
+                        finish.setString(2, owner);
+                        finish.executeUpdate();
+                        completed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        return completed.get();
+    }
+
+    private static Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/testee"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "postgres"));
+        connection.setAutoCommit(true);
+        return connection;
+    }
+}
@@ -0,0 +1,282 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and read latency of the old @ElementCollection layout vs JSONB columns on test_results.
+ *
+ * Both layouts are created in their own schema of a local Postgres and seeded with
+ * {@code existingResults} rows. The element-collection variant replays what Hibernate did for it:
+ * one INSERT per collection element on save, and 1 + 4N queries to read N results. The child
+ * tables get an index on test_result_id, which Hibernate never created, so this is the old
+ * layout at its best.
+ *
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="ResultStorageBenchmark -jvmArgsAppend -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/testee"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ResultStorageBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"element-collection", "jsonb"})
+    public String layout;
+
+    @Param({"10000", "1000000"})
+    public int existingResults;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Connection connection;
+    private String schema;
+
+    // A typical run: 20 log lines, 3 screenshots, 2 bugs, 5 recommendations
+    private List<String> logs;
+    private List<TestResult.Screenshot> screenshots;
+    private List<TestResult.BugItem> bugs;
+    private List<TestResult.Recommendation> recommendations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/testee"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "postgres"));
+        connection.setAutoCommit(true);
+        schema = "bench_" + layout.replace('-', '_') + "_" + existingResults;
+
+        if (seededRows() != existingResults) {
+            exec("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            exec("CREATE SCHEMA " + schema);
+            if (isJsonb()) createJsonbLayout(); else createElementCollectionLayout();
+            exec("ANALYZE");
+        }
+
+        logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) logs.add("▶ step " + i + " — passed");
+        screenshots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            screenshots.add(new TestResult.Screenshot("/uploads/screenshots/shot_" + i + ".png", "shot_" + i + ".png"));
+        }
+        bugs = List.of(
+                new TestResult.BugItem("bug_1", "Checkout button does nothing", "Clicking the button has no effect", "high"),
+                new TestResult.BugItem("bug_2", "Slow hero image", "The banner takes 6 seconds to appear", "medium"));
+        recommendations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            recommendations.add(new TestResult.Recommendation("rec_" + i, "Compress images",
+                    "Large images slow down the first page load", "high", "performance"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        exec("DELETE FROM " + schema + ".test_results WHERE id LIKE 'bench-%'");
+        connection.close();
+    }
+
+    @Benchmark
+    public void insertResult() throws Exception {
+        String id = "bench-" + UUID.randomUUID();
+        connection.setAutoCommit(false);
+        try {
+            if (isJsonb()) {
+                try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + schema + ".test_results "
+                        + "(id, website_url, execution_time, duration, browser, status, script, created_at, completed_at, "
+                        + "logs, screenshots, bugs, recommendations) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?::jsonb, ?::jsonb, ?::jsonb)")) {
+                    bindResult(ps, id);
+                    ps.setString(10, objectMapper.writeValueAsString(logs));
+                    ps.setString(11, objectMapper.writeValueAsString(screenshots));
+                    ps.setString(12, objectMapper.writeValueAsString(bugs));
+                    ps.setString(13, objectMapper.writeValueAsString(recommendations));
+                    ps.executeUpdate();
+                }
+            } else {
+                try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + schema + ".test_results "
+                        + "(id, website_url, execution_time, duration, browser, status, script, created_at, completed_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    bindResult(ps, id);
+                    ps.executeUpdate();
+                }
+                // Hibernate issues one statement per element (no JDBC batching configured)
+                for (String log : logs) {
+                    insertRow("INSERT INTO " + schema + ".test_logs (test_result_id, log) VALUES (?, ?)", id, log);
+                }
+                for (TestResult.Screenshot s : screenshots) {
+                    insertRow("INSERT INTO " + schema + ".test_screenshots (test_result_id, url, caption) VALUES (?, ?, ?)",
+                            id, s.getUrl(), s.getCaption());
+                }
+                for (TestResult.BugItem b : bugs) {
+                    insertRow("INSERT INTO " + schema + ".test_bugs (test_result_id, bug_id, title, description, severity) "
+                            + "VALUES (?, ?, ?, ?, ?)", id, b.getBugId(), b.getTitle(), b.getDescription(), b.getSeverity());
+                }
+                for (TestResult.Recommendation r : recommendations) {
+                    insertRow("INSERT INTO " + schema + ".test_recommendations "
+                                    + "(test_result_id, recommendation_id, title, description, impact, category) "
+                                    + "VALUES (?, ?, ?, ?, ?, ?)",
+                            id, r.getRecommendationId(), r.getTitle(), r.getDescription(), r.getImpact(), r.getCategory());
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public void readLatestPage(Blackhole bh) throws Exception {
+        String columns = "id, website_url, status, duration, browser, script, created_at"
+                + (isJsonb() ? ", logs, screenshots, bugs, recommendations" : "");
+        List<String> ids = new ArrayList<>(PAGE_SIZE);
+        try (PreparedStatement ps = connection.prepareStatement("SELECT " + columns + " FROM " + schema
+                + ".test_results ORDER BY created_at DESC LIMIT " + PAGE_SIZE);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+                bh.consume(rs.getString(2));
+                bh.consume(rs.getString(6));
+                if (isJsonb()) {
+                    // Hibernate deserializes each document into the typed lists
+                    bh.consume(objectMapper.readValue(rs.getString(8), List.class));
+                    bh.consume(objectMapper.readValue(rs.getString(9), List.class));
+                    bh.consume(objectMapper.readValue(rs.getString(10), List.class));
+                    bh.consume(objectMapper.readValue(rs.getString(11), List.class));
+                }
+            }
+        }
+        if (!isJsonb()) {
+            // findAll + convertToDTO: one lazy load per collection per result
+            for (String id : ids) {
+                consumeAll(bh, "SELECT log FROM " + schema + ".test_logs WHERE test_result_id = ?", id);
+                consumeAll(bh, "SELECT url, caption FROM " + schema + ".test_screenshots WHERE test_result_id = ?", id);
+                consumeAll(bh, "SELECT bug_id, title, description, severity FROM " + schema
+                        + ".test_bugs WHERE test_result_id = ?", id);
+                consumeAll(bh, "SELECT recommendation_id, title, description, impact, category FROM " + schema
+                        + ".test_recommendations WHERE test_result_id = ?", id);
+            }
+        }
+    }
+
+    // ==================== SCHEMA + SEED ====================
+
+    private static final String BASE_COLUMNS = "id varchar(255) PRIMARY KEY, website_url varchar(2048) NOT NULL, "
+            + "execution_time timestamp(6) NOT NULL, duration varchar(255), browser varchar(255), "
+            + "status varchar(20) NOT NULL, script text, created_at timestamp(6), completed_at timestamp(6)";
+
+    private static final String SEED_BASE = "'seed-' || g, 'https://example.com/page/' || (g % 500), "
+            + "now() - g * interval '1 second', '12s', 'chromium', "
+            + "CASE WHEN g % 3 = 0 THEN 'failed' ELSE 'passed' END, repeat('x', 2000), "
+            + "now() - g * interval '1 second', now() - g * interval '1 second'";
+
+    private void createElementCollectionLayout() throws SQLException {
+        String results = schema + ".test_results";
+        String fk = "test_result_id varchar(255) NOT NULL REFERENCES " + results + "(id)";
+        exec("CREATE TABLE " + results + " (" + BASE_COLUMNS + ")");
+        exec("CREATE TABLE " + schema + ".test_logs (" + fk + ", log text)");
+        exec("CREATE TABLE " + schema + ".test_screenshots (" + fk + ", url varchar(255) NOT NULL, caption varchar(255))");
+        exec("CREATE TABLE " + schema + ".test_bugs (" + fk + ", bug_id varchar(255) NOT NULL, "
+                + "title varchar(255) NOT NULL, description text NOT NULL, severity varchar(20) NOT NULL)");
+        exec("CREATE TABLE " + schema + ".test_recommendations (" + fk + ", recommendation_id varchar(255) NOT NULL, "
+                + "title varchar(255) NOT NULL, description text NOT NULL, impact varchar(20) NOT NULL, "
+                + "category varchar(255) NOT NULL)");
+
+        exec("INSERT INTO " + results + " SELECT " + SEED_BASE + " FROM generate_series(1, " + existingResults + ") g");
+        exec("INSERT INTO " + schema + ".test_logs SELECT 'seed-' || g, '▶ step ' || i || ' — passed' "
+                + "FROM generate_series(1, " + existingResults + ") g, generate_series(1, 10) i");
+        exec("INSERT INTO " + schema + ".test_screenshots SELECT 'seed-' || g, '/uploads/screenshots/' || g || '_' || i || '.png', "
+                + "g || '_' || i || '.png' FROM generate_series(1, " + existingResults + ") g, generate_series(1, 2) i");
+        exec("INSERT INTO " + schema + ".test_bugs SELECT 'seed-' || g, 'bug_' || i, 'Broken link', "
+                + "'The link leads to a missing page', 'medium' FROM generate_series(1, " + existingResults + ") g, generate_series(1, 2) i");
+        exec("INSERT INTO " + schema + ".test_recommendations SELECT 'seed-' || g, 'rec_' || i, 'Compress images', "
+                + "'Large images slow down the first page load', 'high', 'performance' "
+                + "FROM generate_series(1, " + existingResults + ") g, generate_series(1, 3) i");
+
+        for (String child : List.of("test_logs", "test_screenshots", "test_bugs", "test_recommendations")) {
+            exec("CREATE INDEX ON " + schema + "." + child + " (test_result_id)");
+        }
+        exec("CREATE INDEX ON " + results + " (created_at)");
+    }
+
+    private void createJsonbLayout() throws SQLException {
+        String results = schema + ".test_results";
+        exec("CREATE TABLE " + results + " (" + BASE_COLUMNS
+                + ", logs jsonb, screenshots jsonb, bugs jsonb, recommendations jsonb)");
+        exec("INSERT INTO " + results + " SELECT " + SEED_BASE + ", "
+                + "(SELECT jsonb_agg('▶ step ' || i || ' — passed') FROM generate_series(1, 10) i), "
+                + "(SELECT jsonb_agg(jsonb_build_object('url', '/uploads/screenshots/' || g || '_' || i || '.png', "
+                + "'caption', g || '_' || i || '.png')) FROM generate_series(1, 2) i), "
+                + "(SELECT jsonb_agg(jsonb_build_object('bugId', 'bug_' || i, 'title', 'Broken link', "
+                + "'description', 'The link leads to a missing page', 'severity', 'medium')) FROM generate_series(1, 2) i), "
+                + "(SELECT jsonb_agg(jsonb_build_object('recommendationId', 'rec_' || i, 'title', 'Compress images', "
+                + "'description', 'Large images slow down the first page load', 'impact', 'high', "
+                + "'category', 'performance')) FROM generate_series(1, 3) i) "
+                + "FROM generate_series(1, " + existingResults + ") g");
+        exec("CREATE INDEX ON " + results + " (created_at)");
+    }
+
+    // ==================== HELPERS ====================
+
+    private boolean isJsonb() {
+        return "jsonb".equals(layout);
+    }
+
+    private long seededRows() {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT count(*) FROM " + schema + ".test_results WHERE id LIKE 'seed-%'")) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            return -1; // schema not created yet
+        }
+    }
+
+    private void bindResult(PreparedStatement ps, String id) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        ps.setString(1, id);
+        ps.setString(2, "https://example.com/checkout");
+        ps.setTimestamp(3, now);
+        ps.setString(4, "14s");
+        ps.setString(5, "chromium");
+        ps.setString(6, "failed");
+        ps.setString(7, "x".repeat(2000));
+        ps.setTimestamp(8, now);
+        ps.setTimestamp(9, now);
+    }
+
+    private void insertRow(String sql, String... values) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < values.length; i++) ps.setString(i + 1, values[i]);
+            ps.executeUpdate();
+        }
+    }
+
+    private void consumeAll(Blackhole bh, String sql, String id) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int c = 1; c <= columns; c++) bh.consume(rs.getString(c));
+                }
+            }
+        }
+    }
+
+    private void exec(String sql) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+}
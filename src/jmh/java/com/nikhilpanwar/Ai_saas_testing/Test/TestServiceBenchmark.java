@@ -0,0 +1,152 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Hot paths of TestService, driven by an /execute-tests response fixture.
+ *
+ * "small" is the fixture as captured from a five-test run. "large" scales it up to a long run:
+ * 50x logs, 10x bugs, 20x recommendations and 12 full-page-sized screenshots (1.5 MB each).
+ *
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="TestServiceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class TestServiceBenchmark {
+
+    private static final String FIXTURE = "/fixtures/execute-tests-response.json";
+
+    @Param({"small", "large"})
+    public String fixture;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutionResponseParser parser = new ExecutionResponseParser(objectMapper);
+
+    private byte[] responseBody;          // full response, screenshots included
+    private byte[] responseWithoutShots;  // same response with screenshots removed
+    private Path screenshotDir;
+    private ExecutionResponse parsed;
+    private TestResult result;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectNode root;
+        try (InputStream in = TestServiceBenchmark.class.getResourceAsStream(FIXTURE)) {
+            root = (ObjectNode) objectMapper.readTree(in);
+        }
+        if ("large".equals(fixture)) {
+            scaleUp(root);
+        }
+        responseBody = objectMapper.writeValueAsBytes(root);
+        root.remove("screenshots");
+        responseWithoutShots = objectMapper.writeValueAsBytes(root);
+
+        screenshotDir = Files.createTempDirectory("bench-screenshots");
+        parsed = parser.parse(new ByteArrayInputStream(responseBody), screenshotDir);
+
+        // The entity exactly as runPipeline would save it
+        List<TestResult.BugItem> bugs = new ArrayList<>();
+        for (ExecutionResponse.Bug b : parsed.getBugs()) {
+            bugs.add(new TestResult.BugItem(b.getBugId(), b.getTitle(), b.getDescription(), b.getSeverity()));
+        }
+        List<TestResult.Recommendation> recommendations = new ArrayList<>();
+        for (ExecutionResponse.Recommendation r : parsed.getRecommendations()) {
+            recommendations.add(TestService.normalizeRecommendation(r));
+        }
+        result = TestResult.builder()
+                .id("7d1f0c9e-5b8a-4e0f-9a3c-2b6d8e4f1a70")
+                .websiteUrl("https://shop.example.com/products/42")
+                .status(parsed.getStatus())
+                .duration(parsed.getDuration())
+                .browser(parsed.getBrowser())
+                .script("x".repeat("large".equals(fixture) ? 40_000 : 4_000))
+                .logs(parsed.getLogs())
+                .bugs(bugs)
+                .recommendations(recommendations)
+                .screenshots(parsed.getScreenshots())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(screenshotDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public TestResultDTO convertToDTO() {
+        return TestService.convertToDTO(result);
+    }
+
+    @Benchmark
+    public void normalizeRecommendations(Blackhole bh) {
+        for (ExecutionResponse.Recommendation r : parsed.getRecommendations()) {
+            bh.consume(TestService.normalizeRecommendation(r));
+        }
+    }
+
+    /**
+     * Binding logs, bugs and recommendations - the work extractStringList and the Map casts used to do
+     */
+    @Benchmark
+    public ExecutionResponse parseWithoutScreenshots() throws IOException {
+        return parser.parse(new ByteArrayInputStream(responseWithoutShots), screenshotDir);
+    }
+
+    /**
+     * Full response including base64 decode + write of every screenshot
+     */
+    @Benchmark
+    public ExecutionResponse parseAndWriteScreenshots() throws IOException {
+        return parser.parse(new ByteArrayInputStream(responseBody), screenshotDir);
+    }
+
+    private void scaleUp(ObjectNode root) {
+        multiply((ArrayNode) root.get("logs"), 50);
+        multiply((ArrayNode) root.get("bugs"), 10);
+        multiply((ArrayNode) root.get("recommendations"), 20);
+
+        // Random bytes don't compress, like real PNG data
+        Random random = new Random(42);
+        byte[] image = new byte[1_500_000];
+        random.nextBytes(image);
+        String b64 = Base64.getEncoder().encodeToString(image);
+
+        ArrayNode shots = root.putArray("screenshots");
+        for (int i = 0; i < 12; i++) {
+            shots.addObject().put("b64", b64).put("filename", "step_" + i + "_1718000000000.png");
+        }
+    }
+
+    private static void multiply(ArrayNode array, int factor) {
+        List<com.fasterxml.jackson.databind.JsonNode> original = new ArrayList<>();
+        array.forEach(original::add);
+        for (int i = 1; i < factor; i++) {
+            for (var node : original) array.add(node.deepCopy());
+        }
+    }
+}
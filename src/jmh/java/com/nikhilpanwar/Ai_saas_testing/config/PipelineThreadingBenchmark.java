@@ -0,0 +1,133 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform vs virtual thread throughput of the blocking generate/execute pipeline.
+ *
+ * A local stub stands in for the Flask service and answers /generate-tests and /execute-tests
+ * after a fixed delay, so the only variable is how many pipelines can be parked on the
+ * Python calls at once. The platform pool is sized like Tomcat's default (200 threads).
+ * Score is the time to drain {@code concurrentRuns} simultaneous pipelines; runs/sec is
+ * {@code concurrentRuns / score}.
+ *
+ * ./mvnw -Pbenchmark test-compile exec:exec -Djmh.args="PipelineThreadingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Dhttp.maxConnections=4000"})
+public class PipelineThreadingBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final byte[] GENERATE_BODY =
+            "{\"success\":true,\"test_script\":\"test('x', async () => {});\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EXECUTE_BODY =
+            "{\"success\":true,\"status\":\"passed\",\"logs\":[],\"bugs\":[],\"recommendations\":[],\"screenshots\":[]}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"200", "1000"})
+    public int concurrentRuns;
+
+    @Param({"100"})
+    public int pythonLatencyMs;
+
+    private HttpServer stub;
+    private TaskExecutor executor;
+    private RestTemplate restTemplate;
+    private String generateUrl;
+    private String executeUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 8192);
+        stub.createContext("/generate-tests", exchange -> respond(exchange, GENERATE_BODY));
+        stub.createContext("/execute-tests", exchange -> respond(exchange, EXECUTE_BODY));
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.start();
+
+        String base = "http://127.0.0.1:" + stub.getAddress().getPort();
+        generateUrl = base + "/generate-tests";
+        executeUrl = base + "/execute-tests";
+
+        boolean virtual = "virtual".equals(threads);
+        executor = new AsyncConfig().testPipelineExecutor(
+                virtual, PLATFORM_THREADS, PLATFORM_THREADS, PLATFORM_THREADS, Integer.MAX_VALUE);
+        restTemplate = new RestTemplate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor simple) {
+            simple.close();
+        }
+        stub.stop(0);
+    }
+
+    @Benchmark
+    public int drainConcurrentPipelines() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrentRuns);
+        AtomicInteger passed = new AtomicInteger();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        for (int i = 0; i < concurrentRuns; i++) {
+            executor.execute(() -> {
+                try {
+                    // Same two blocking hops as TestService.generateAndExecuteTest
+                    Map<?, ?> generated = restTemplate.postForObject(
+                            generateUrl, new HttpEntity<>(Map.of("url", "https://example.com"), headers), Map.class);
+                    Map<?, ?> executed = restTemplate.postForObject(
+                            executeUrl, new HttpEntity<>(Map.of("test_script", generated.get("test_script")), headers), Map.class);
+                    if ("passed".equals(executed.get("status"))) {
+                        passed.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        return passed.get();
+    }
+
+    private void respond(com.sun.net.httpserver.HttpExchange exchange, byte[] body) throws java.io.IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            Thread.sleep(pythonLatencyMs);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.nikhilpanwar.Ai_saas_testing;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
 @SpringBootApplication
 @EnableAsync
 public class AiSaasTestingApplication {
@@ -12,9 +10,4 @@ public class AiSaasTestingApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(AiSaasTestingApplication.class, args);
 	}
-
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
 }
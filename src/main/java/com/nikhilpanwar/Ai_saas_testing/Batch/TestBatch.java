@@ -0,0 +1,39 @@
+package com.nikhilpanwar.Ai_saas_testing.Batch;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A group of test runs submitted together; its results are the test_results rows with this batchId
+ */
+@Entity
+@Table(name = "test_batches")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(nullable = false)
+    private int total;
+
+    @Column(nullable = false)
+    private int concurrency; // max runs of this batch in flight at once
+
+    @Column(nullable = false)
+    private boolean shareScripts; // one AI generation per url template
+
+    private int sharedScripts; // runs that reused a template script instead of calling the AI
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
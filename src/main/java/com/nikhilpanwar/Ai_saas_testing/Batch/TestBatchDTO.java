@@ -0,0 +1,27 @@
+package com.nikhilpanwar.Ai_saas_testing.Batch;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestResultSummary;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestBatchDTO {
+
+    private String id;
+    private String status; // "processing" until every run has finished, then "completed"
+    private int total;
+    private int concurrency;
+    private int sharedScripts;
+    private Map<String, Long> statusCounts; // e.g. {"passed": 40, "failed": 2, "processing": 8}
+    private LocalDateTime createdAt;
+    private List<TestResultSummary> results;
+}
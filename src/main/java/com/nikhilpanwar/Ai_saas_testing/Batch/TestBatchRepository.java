@@ -0,0 +1,8 @@
+package com.nikhilpanwar.Ai_saas_testing.Batch;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TestBatchRepository extends JpaRepository<TestBatch, String> {
+}
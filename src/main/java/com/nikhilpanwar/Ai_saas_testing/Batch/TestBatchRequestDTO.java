@@ -0,0 +1,17 @@
+package com.nikhilpanwar.Ai_saas_testing.Batch;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestBatchRequestDTO {
+    private List<TestRequestDTO> tests;
+    private Integer concurrency; // Optional - defaults to test.batch.default-concurrency
+    private boolean shareScripts = true; // Optional - generate once per url template and reuse
+}
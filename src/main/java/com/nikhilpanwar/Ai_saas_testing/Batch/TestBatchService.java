@@ -0,0 +1,215 @@
+package com.nikhilpanwar.Ai_saas_testing.Batch;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class TestBatchService {
+
+    private final TestBatchRepository batchRepository;
+    private final TestResultRepository testRepository;
+    private final TestService testService;
+    private final TestJobService testJobService;
+    private final ScriptCache scriptCache;
+    private final PipelineAdmission admission;
+    private final TaskExecutor generateStageExecutor;
+    private final int maxItems;
+    private final int maxConcurrency;
+    private final int defaultConcurrency;
+
+    public TestBatchService(TestBatchRepository batchRepository,
+                            TestResultRepository testRepository,
+                            TestService testService,
+                            TestJobService testJobService,
+                            ScriptCache scriptCache,
+                            PipelineAdmission admission,
+                            @Qualifier("generateStageExecutor") TaskExecutor generateStageExecutor,
+                            @Value("${test.batch.max-items:500}") int maxItems,
+                            @Value("${test.batch.max-concurrency:16}") int maxConcurrency,
+                            @Value("${test.batch.default-concurrency:4}") int defaultConcurrency) {
+        this.batchRepository = batchRepository;
+        this.testRepository = testRepository;
+        this.testService = testService;
+        this.testJobService = testJobService;
+        this.scriptCache = scriptCache;
+        this.admission = admission;
+        this.generateStageExecutor = generateStageExecutor;
+        this.maxItems = maxItems;
+        this.maxConcurrency = maxConcurrency;
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    /**
+     * Persist one pending result per request and start them in the background.
+     * Clients poll GET /api/test/batch/{batchId} for the aggregate status.
+     *
+     * The whole batch takes a single slot of the async backlog: only its first
+     * {@code concurrency} runs are ever queued at once. For the same reason a run without its own
+     * deadline gets the default budget when it starts, not at submission (see TestJobService#execute).
+     */
+    public TestBatchDTO submit(TestBatchRequestDTO request) {
+        List<TestRequestDTO> tests = request.getTests();
+        if (tests == null || tests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch has no tests");
+        }
+        if (tests.size() > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch has " + tests.size() + " tests, the limit is " + maxItems);
+        }
+        if (tests.stream().anyMatch(t -> t == null || t.getUrl() == null || t.getUrl().isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every test needs a url");
+        }
+        tests.forEach(testJobService::checkQueueable);
+        int concurrency = Math.max(1, Math.min(
+                request.getConcurrency() != null ? request.getConcurrency() : defaultConcurrency, maxConcurrency));
+
+        admission.admitAsync(); // 429 when the backlog is already full
+
+        List<String> testIds = List.of();
+        try {
+            TestBatch batch = batchRepository.save(TestBatch.builder()
+                    .total(tests.size())
+                    .concurrency(concurrency)
+                    .shareScripts(request.isShareScripts())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            testIds = testService.createPendingTests(batch.getId(), tests);
+
+            dispatch(batch, testIds, tests);
+
+            System.out.println("📦 Queued batch " + batch.getId() + " with " + tests.size()
+                    + " tests, concurrency " + concurrency);
+            return getBatch(batch.getId());
+        } catch (RuntimeException e) {
+            admission.asyncFinished();
+            failAll(testIds, "Could not schedule batch: " + e.getMessage());
+            if (e instanceof TaskRejectedException) {
+                throw new AdmissionRejectedException("Pipeline executor is full",
+                        admission.estimateAsyncRetryAfterSeconds(0));
+            }
+            throw e;
+        }
+    }
+
+    public TestBatchDTO getBatch(String batchId) {
+        TestBatch batch = batchRepository.findById(batchId)
+                .orElseThrow(() -> new RuntimeException("Batch not found"));
+        List<TestResultSummary> results = testRepository.findSummariesByBatch(batchId);
+
+        Map<String, Long> statusCounts = results.stream()
+                .collect(Collectors.groupingBy(TestResultSummary::getStatus, TreeMap::new, Collectors.counting()));
+        boolean finished = results.size() == batch.getTotal() && !statusCounts.containsKey("processing");
+
+        return TestBatchDTO.builder()
+                .id(batch.getId())
+                .status(finished ? "completed" : "processing")
+                .total(batch.getTotal())
+                .concurrency(batch.getConcurrency())
+                .sharedScripts(batch.getSharedScripts())
+                .statusCounts(statusCounts)
+                .createdAt(batch.getCreatedAt())
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Dispatch every run of the batch straight away. With shared scripts, runs outside any template
+     * group go first; each group's script is generated on the generate stage, all groups in parallel,
+     * and its members start once it is stored (or generate their own if that fails).
+     */
+    private void dispatch(TestBatch batch, List<String> testIds, List<TestRequestDTO> tests) {
+        List<List<Integer>> groups = batch.isShareScripts() ? templateGroups(tests) : List.of();
+
+        List<Integer> order = new ArrayList<>(tests.size());
+        Set<Integer> grouped = new HashSet<>();
+        groups.forEach(grouped::addAll);
+        for (int i = 0; i < tests.size(); i++) {
+            if (!grouped.contains(i)) order.add(i);
+        }
+        groups.forEach(order::addAll);
+
+        List<CompletableFuture<Integer>> generated = new ArrayList<>(groups.size());
+        CompletableFuture<?>[] startAfter = new CompletableFuture<?>[tests.size()];
+        for (List<Integer> members : groups) {
+            CompletableFuture<Integer> group = CompletableFuture
+                    .supplyAsync(() -> testService.generateScript(tests.get(members.get(0))), generateStageExecutor)
+                    .handle((script, e) -> {
+                        if (e != null) {
+                            System.err.println("❌ Template script failed, batch runs generate their own: " + e.getMessage());
+                            return 0;
+                        }
+                        return shareScript(script, members, testIds, tests);
+                    });
+            members.forEach(i -> startAfter[i] = group);
+            generated.add(group);
+        }
+
+        testJobService.dispatchBatch(batch.getId(),
+                order.stream().map(testIds::get).toList(),
+                order.stream().map(tests::get).toList(),
+                order.stream().map(i -> startAfter[i]).collect(Collectors.toList()), // null entries start at once
+                batch.getConcurrency(), admission::asyncFinished);
+
+        if (!generated.isEmpty()) {
+            CompletableFuture.allOf(generated.toArray(CompletableFuture[]::new)).thenRun(() -> {
+                int shared = generated.stream().mapToInt(CompletableFuture::join).sum();
+                if (shared > 0) {
+                    System.out.println("♻️ Batch reuses template scripts for " + shared + " tests");
+                    batch.setSharedScripts(shared);
+                    batchRepository.save(batch);
+                }
+            });
+        }
+    }
+
+    /**
+     * Groups of at least two urls with the same template and requirements
+     */
+    private List<List<Integer>> templateGroups(List<TestRequestDTO> tests) {
+        Map<String, List<Integer>> templates = new LinkedHashMap<>();
+        for (int i = 0; i < tests.size(); i++) {
+            if (tests.get(i).isBypassCache()) continue;
+            templates.computeIfAbsent(scriptCache.templateKeyFor(tests.get(i)), k -> new ArrayList<>()).add(i);
+        }
+        return templates.values().stream().filter(members -> members.size() >= 2).toList();
+    }
+
+    /**
+     * Store a group's script on every member's pending result with the url swapped in. Returns how
+     * many runs skip their own AI call. If the script doesn't mention the url literally, every
+     * member generates its own.
+     */
+    private int shareScript(String script, List<Integer> members, List<String> testIds, List<TestRequestDTO> tests) {
+        TestRequestDTO representative = tests.get(members.get(0));
+        if (script.startsWith("//") || !script.contains(representative.getUrl())) return 0;
+
+        // Distinct urls only - identical requests are coalesced by the pipeline anyway
+        Map<String, Integer> firstByUrl = members.stream()
+                .collect(Collectors.toMap(i -> tests.get(i).getUrl(), Function.identity(), (a, b) -> a));
+        int shared = 0;
+        for (int i : members) {
+            String url = tests.get(i).getUrl();
+            testService.assignScript(testIds.get(i), script.replace(representative.getUrl(), url));
+            if (i != members.get(0) && firstByUrl.get(url) == i) shared++;
+        }
+        return shared;
+    }
+
+    private void failAll(List<String> testIds, String reason) {
+        for (String testId : testIds) {
+            testService.failPendingTest(testId, reason);
+        }
+    }
+}
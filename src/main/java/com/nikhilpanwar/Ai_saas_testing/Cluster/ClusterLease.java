@@ -0,0 +1,35 @@
+package com.nikhilpanwar.Ai_saas_testing.Cluster;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Named lease held by at most one node at a time, e.g. the cluster leader
+ */
+@Entity
+@Table(name = "cluster_leases")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClusterLease {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private String owner; // node id of the holder
+
+    @Column(nullable = false)
+    private long term; // +1 on every change of holder
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt; // free for anyone to take after this (database clock)
+
+    @Column(nullable = false)
+    private LocalDateTime acquiredAt;
+}
@@ -0,0 +1,43 @@
+package com.nikhilpanwar.Ai_saas_testing.Cluster;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ClusterLeaseRepository extends JpaRepository<ClusterLease, String> {
+
+    /**
+     * Take the lease if it is free or expired, or extend it if {@code owner} already holds it.
+     * Expiry is judged by the database clock, so node clocks don't matter.
+     * Returns the lease term, or null if another node holds it.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO cluster_leases (name, owner, term, expires_at, acquired_at)
+            VALUES (:name, :owner, 1, now() + (:ttlMillis * interval '1 millisecond'), now())
+            ON CONFLICT (name) DO UPDATE
+            SET owner = EXCLUDED.owner,
+                expires_at = EXCLUDED.expires_at,
+                term = CASE WHEN cluster_leases.owner = EXCLUDED.owner
+                            THEN cluster_leases.term ELSE cluster_leases.term + 1 END,
+                acquired_at = CASE WHEN cluster_leases.owner = EXCLUDED.owner
+                                   THEN cluster_leases.acquired_at ELSE now() END
+            WHERE cluster_leases.owner = EXCLUDED.owner OR cluster_leases.expires_at < now()
+            RETURNING term
+            """, nativeQuery = true)
+    Long acquire(@Param("name") String name,
+                 @Param("owner") String owner,
+                 @Param("ttlMillis") long ttlMillis);
+
+    /**
+     * Give the lease up so another node can take it straight away
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cluster_leases WHERE name = :name AND owner = :owner", nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
@@ -0,0 +1,189 @@
+package com.nikhilpanwar.Ai_saas_testing.Cluster;
+
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJobWorker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks one node to run cluster-wide periodic work (schedules, recovery, purges), using a lease
+ * row in cluster_leases. Every node tries to take or renew the lease each {@code lease / 3};
+ * the holder renews it, the others take over once it expires.
+ *
+ * A node counts itself leader only until {@code lease} after the start of its last successful
+ * renewal - before the database expiry, so two nodes never both believe they lead. A node that
+ * shuts down deletes the row, so failover then takes one renewal interval instead of a lease.
+ *
+ * With {@code test.leader.enabled=false} (single node) this node is always the leader.
+ */
+@Component
+public class LeaderElection implements SmartLifecycle {
+
+    private static final String LEASE_NAME = "maintenance";
+
+    private final ClusterLeaseRepository leaseRepository;
+    private final String nodeId;
+    private final boolean enabled;
+    private final Duration lease;
+
+    private record PeriodicTask(String name, Runnable task, Duration interval) {
+    }
+
+    private final List<Runnable> onElected = new CopyOnWriteArrayList<>();
+    private final List<PeriodicTask> periodic = new CopyOnWriteArrayList<>();
+    private final Counter elected;
+    private final Counter lost;
+
+    private ScheduledExecutorService renewer;
+    private ScheduledExecutorService leaderTasks; // keeps slow leader work off the renewal thread
+    private volatile boolean leader;
+    private volatile long validUntilNanos;
+    private volatile long term;
+    private volatile boolean running;
+
+    public LeaderElection(ClusterLeaseRepository leaseRepository,
+                          TestJobWorker jobWorker,
+                          MeterRegistry registry,
+                          @Value("${test.leader.enabled:true}") boolean enabled,
+                          @Value("${test.leader.lease:15s}") Duration lease) {
+        this.leaseRepository = leaseRepository;
+        this.nodeId = jobWorker.getNodeId();
+        this.enabled = enabled;
+        this.lease = lease;
+
+        Gauge.builder("cluster.leader", this, e -> e.isLeader() ? 1 : 0)
+                .description("1 while this node runs the cluster-wide periodic work")
+                .register(registry);
+        this.elected = Counter.builder("cluster.leader.transitions").tag("event", "elected").register(registry);
+        this.lost = Counter.builder("cluster.leader.transitions").tag("event", "lost").register(registry);
+    }
+
+    public boolean isLeader() {
+        return leader && (!enabled || System.nanoTime() - validUntilNanos < 0);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    /**
+     * Run {@code task} every time this node becomes leader, on a background thread
+     */
+    public void onElected(Runnable task) {
+        onElected.add(task);
+    }
+
+    /**
+     * Run {@code task} every {@code interval} while this node is leader; register before startup
+     */
+    public void whileLeader(String name, Duration interval, Runnable task) {
+        periodic.add(new PeriodicTask(name, task, interval));
+    }
+
+    @Override
+    public void start() {
+        leaderTasks = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("leader-tasks").daemon(true).factory());
+        for (PeriodicTask p : periodic) {
+            long millis = p.interval().toMillis();
+            leaderTasks.scheduleWithFixedDelay(() -> {
+                if (isLeader()) runQuietly(p.name(), p.task());
+            }, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+        if (!enabled) {
+            becomeLeader();
+            return;
+        }
+
+        renewer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("leader-election").daemon(true).factory());
+        long interval = Math.max(500, lease.toMillis() / 3);
+        renewer.scheduleWithFixedDelay(this::renew, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (renewer != null) {
+            renewer.shutdownNow();
+        }
+        leaderTasks.shutdownNow();
+        if (enabled && leader) {
+            leader = false;
+            try {
+                leaseRepository.release(LEASE_NAME, nodeId);
+                System.out.println("👑 " + nodeId + " stepped down as leader");
+            } catch (RuntimeException e) {
+                System.err.println("Could not release leadership, it lapses in " + lease.toSeconds() + "s: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after PipelineDrain, so a draining node's runs aren't recovered by a new leader meanwhile
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 256;
+    }
+
+    private void renew() {
+        long attemptStart = System.nanoTime();
+        try {
+            Long currentTerm = leaseRepository.acquire(LEASE_NAME, nodeId, lease.toMillis());
+            if (currentTerm != null) {
+                validUntilNanos = attemptStart + lease.toNanos();
+                term = currentTerm;
+                if (!leader) becomeLeader();
+            } else if (leader) {
+                stepDown("lease taken by another node");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Leader lease renewal error: " + e.getMessage());
+            if (leader && !isLeader()) {
+                stepDown("lease not renewed in time");
+            }
+        }
+    }
+
+    private void stepDown(String reason) {
+        leader = false;
+        lost.increment();
+        System.out.println("👑 " + nodeId + " lost leadership: " + reason);
+    }
+
+    private void becomeLeader() {
+        leader = true;
+        elected.increment();
+        System.out.println("👑 " + nodeId + " is now leader" + (enabled ? " (term " + term + ")" : ""));
+        for (Runnable task : onElected) {
+            leaderTasks.execute(() -> runQuietly("Leader task", task));
+        }
+    }
+
+    private static void runQuietly(String name, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.err.println(name + " failed: " + e.getMessage());
+        }
+    }
+}
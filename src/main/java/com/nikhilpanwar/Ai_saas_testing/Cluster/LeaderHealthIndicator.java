@@ -0,0 +1,25 @@
+package com.nikhilpanwar.Ai_saas_testing.Cluster;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * "leader" component of /actuator/health. Always UP: following is a healthy state too.
+ */
+@Component("leader")
+@RequiredArgsConstructor
+public class LeaderHealthIndicator implements HealthIndicator {
+
+    private final LeaderElection leaderElection;
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetail("leader", leaderElection.isLeader())
+                .withDetail("node", leaderElection.getNodeId())
+                .withDetail("term", leaderElection.getTerm())
+                .build();
+    }
+}
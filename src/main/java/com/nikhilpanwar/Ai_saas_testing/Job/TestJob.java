@@ -0,0 +1,63 @@
+package com.nikhilpanwar.Ai_saas_testing.Job;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Durable unit of work for one test run, claimed by workers on any node
+ */
+@Entity
+@Table(name = "test_jobs", indexes = {
+        @Index(name = "idx_test_jobs_status_created", columnList = "status, createdAt"),
+        @Index(name = "idx_test_jobs_batch_status", columnList = "batchId, status"),
+        @Index(name = "idx_test_jobs_host_status", columnList = "host, status")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(nullable = false, unique = true)
+    private String testId; // the TestResult this job fills in
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private TestRequestDTO payload;
+
+    @Column(nullable = false, length = 20)
+    private String status; // "held" (waiting for a batch slot), "queued", "running", "completed", "failed", "cancelled"
+
+    private String batchId; // batch jobs beyond the batch's concurrency start "held"
+
+    private String host; // target host of payload.url, for per-host limits in the claim query
+
+    private LocalDateTime notBefore; // not claimed before this time (deferred because its host was busy)
+
+    @Column(nullable = false)
+    private int attempts;
+
+    private String leaseOwner; // node id of the worker holding the job
+
+    private LocalDateTime leaseExpiresAt; // another node may reclaim the job after this
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
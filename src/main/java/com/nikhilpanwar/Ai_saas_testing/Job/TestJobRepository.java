@@ -0,0 +1,176 @@
+package com.nikhilpanwar.Ai_saas_testing.Job;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TestJobRepository extends JpaRepository<TestJob, String> {
+
+    /**
+     * Atomically lease up to {@code limit} jobs to {@code owner}: queued jobs that are due and whose
+     * host has fewer than {@code maxPerHost} live runs, plus running jobs whose lease ran out because
+     * their node died. SKIP LOCKED lets every node claim concurrently without blocking on, or
+     * double-claiming, rows another node is taking.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE test_jobs
+            SET status = 'running',
+                lease_owner = :owner,
+                lease_expires_at = now() + (:leaseSeconds * interval '1 second'),
+                attempts = attempts + 1,
+                not_before = NULL,
+                updated_at = now()
+            WHERE id IN (
+                SELECT j.id FROM test_jobs j
+                WHERE (j.status = 'queued'
+                       AND (j.not_before IS NULL OR j.not_before <= now())
+                       AND (j.host IS NULL OR (
+                            SELECT count(*) FROM test_jobs r
+                            WHERE r.host = j.host AND r.status = 'running' AND r.lease_expires_at >= now()
+                           ) < :maxPerHost))
+                   OR (j.status = 'running' AND j.lease_expires_at < now())
+                ORDER BY j.created_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """, nativeQuery = true)
+    List<TestJob> claim(@Param("owner") String owner,
+                        @Param("leaseSeconds") long leaseSeconds,
+                        @Param("limit") int limit,
+                        @Param("maxPerHost") int maxPerHost);
+
+    /**
+     * Hand a claimed job back without spending an attempt; it becomes claimable after the delay
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_jobs
+            SET status = 'queued', lease_owner = NULL, lease_expires_at = NULL,
+                attempts = attempts - 1,
+                not_before = now() + (:delayMillis * interval '1 millisecond'),
+                updated_at = now()
+            WHERE id = :id AND lease_owner = :owner
+            """, nativeQuery = true)
+    int defer(@Param("id") String id,
+              @Param("owner") String owner,
+              @Param("delayMillis") long delayMillis);
+
+    /**
+     * Queued and held jobs per target host, for the host queue depth gauge
+     */
+    @Query(value = """
+            SELECT host AS host, count(*) AS jobs FROM test_jobs
+            WHERE status IN ('queued', 'held') AND host IS NOT NULL
+            GROUP BY host
+            """, nativeQuery = true)
+    List<HostBacklog> countWaitingByHost();
+
+    interface HostBacklog {
+        String getHost();
+
+        long getJobs();
+    }
+
+    /**
+     * Let jobs that were waiting for their batch's template script be claimed now
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_jobs SET not_before = NULL, updated_at = now()
+            WHERE test_id IN (:testIds) AND status IN ('held', 'queued')
+            """, nativeQuery = true)
+    int startWaiting(@Param("testIds") Collection<String> testIds);
+
+    /**
+     * Queued backlog, counting no further than {@code limit} so the check stays cheap when deep
+     */
+    @Query(value = "SELECT count(*) FROM (SELECT 1 FROM test_jobs WHERE status = 'queued' LIMIT :limit) q",
+            nativeQuery = true)
+    int countQueuedUpTo(@Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_jobs
+            SET lease_expires_at = now() + (:leaseSeconds * interval '1 second'), updated_at = now()
+            WHERE lease_owner = :owner AND status = 'running' AND id IN (:ids)
+            """, nativeQuery = true)
+    int renewLeases(@Param("owner") String owner,
+                    @Param("leaseSeconds") long leaseSeconds,
+                    @Param("ids") Collection<String> ids);
+
+    /**
+     * Release a job with its final (or "queued" again) status. Ignored if the lease was lost.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_jobs
+            SET status = :status, lease_owner = NULL, lease_expires_at = NULL,
+                last_error = :error, updated_at = now()
+            WHERE id = :id AND lease_owner = :owner
+            """, nativeQuery = true)
+    int finish(@Param("id") String id,
+               @Param("owner") String owner,
+               @Param("status") String status,
+               @Param("error") String error);
+
+    /**
+     * Cancel the job of a result unless it already finished, taking the lease away from its worker.
+     * Returns the status the job had, so the caller knows whether it held a batch slot.
+     */
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT id, status FROM test_jobs
+                WHERE test_id = :testId AND status IN ('held', 'queued', 'running')
+                FOR UPDATE)
+            UPDATE test_jobs j
+            SET status = 'cancelled', lease_owner = NULL, lease_expires_at = NULL,
+                not_before = NULL, updated_at = now()
+            FROM target t
+            WHERE j.id = t.id
+            RETURNING t.status AS "previousStatus", j.batch_id AS "batchId"
+            """, nativeQuery = true)
+    List<CancelledJob> cancel(@Param("testId") String testId);
+
+    interface CancelledJob {
+        String getPreviousStatus();
+
+        String getBatchId();
+    }
+
+    /**
+     * Which of the given jobs were cancelled since they were claimed
+     */
+    @Query(value = "SELECT test_id FROM test_jobs WHERE id IN (:ids) AND status = 'cancelled'", nativeQuery = true)
+    List<String> findCancelledTestIds(@Param("ids") Collection<String> ids);
+
+    /**
+     * A batch job finished: move the batch's oldest held job to the queue, keeping the number of
+     * its jobs in flight at the batch's concurrency
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_jobs
+            SET status = 'queued', updated_at = now()
+            WHERE id = (
+                SELECT id FROM test_jobs
+                WHERE batch_id = :batchId AND status = 'held'
+                ORDER BY created_at
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED)
+            """, nativeQuery = true)
+    int releaseBatchSlot(@Param("batchId") String batchId);
+}
@@ -0,0 +1,230 @@
+package com.nikhilpanwar.Ai_saas_testing.Job;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.HostScheduler;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestCancellationRegistry;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestJobService;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls test_jobs and runs claimed jobs on the pipeline executor.
+ *
+ * Each node runs at most {@code test.jobs.workers} jobs at once and keeps their leases alive
+ * with a heartbeat. If the node dies the leases expire and another node picks the jobs up.
+ */
+@Component
+public class TestJobWorker implements SmartLifecycle {
+
+    private final TestJobRepository jobRepository;
+    private final TestJobService testJobService;
+    private final TestService testService;
+    private final TaskExecutor pipelineExecutor;
+    private final HostScheduler hostScheduler;
+    private final TestCancellationRegistry cancellations;
+
+    private final boolean enabled;
+    private final int workers;
+    private final Duration lease;
+    private final Duration pollInterval;
+    private final int maxAttempts;
+    private final String nodeId;
+
+    private final Semaphore slots;
+    private final Map<String, String> runningJobs = new ConcurrentHashMap<>(); // job id -> test id
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    private volatile boolean claiming = true;
+
+    public TestJobWorker(TestJobRepository jobRepository,
+                         TestJobService testJobService,
+                         TestService testService,
+                         @Qualifier("testPipelineExecutor") TaskExecutor pipelineExecutor,
+                         HostScheduler hostScheduler,
+                         TestCancellationRegistry cancellations,
+                         @Value("${test.jobs.durable:true}") boolean enabled,
+                         @Value("${test.jobs.workers:8}") int workers,
+                         @Value("${test.jobs.lease:60s}") Duration lease,
+                         @Value("${test.jobs.poll-interval:500ms}") Duration pollInterval,
+                         @Value("${test.jobs.max-attempts:3}") int maxAttempts,
+                         @Value("${test.jobs.node-id:}") String nodeId) {
+        this.jobRepository = jobRepository;
+        this.testJobService = testJobService;
+        this.testService = testService;
+        this.pipelineExecutor = pipelineExecutor;
+        this.hostScheduler = hostScheduler;
+        this.cancellations = cancellations;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.lease = lease;
+        this.pollInterval = pollInterval;
+        this.maxAttempts = maxAttempts;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.slots = new Semaphore(workers);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+
+        scheduler = Executors.newScheduledThreadPool(2, Thread.ofPlatform().name("test-jobs-", 0).daemon(true).factory());
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        long heartbeat = Math.max(1000, lease.toMillis() / 3);
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        running = true;
+        System.out.println("👷 Job worker " + nodeId + " started with " + workers + " slots");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after PipelineDrain, so leases stay alive while running jobs drain
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 512;
+    }
+
+    /**
+     * Take no new jobs; running ones carry on and keep their leases
+     */
+    public void stopClaiming() {
+        claiming = false;
+    }
+
+    public int getRunningJobCount() {
+        return runningJobs.size();
+    }
+
+    /**
+     * Put every job still running here back on the queue without using an attempt. Their pipelines
+     * must be stopped afterwards (finishing them is then a no-op). Returns how many were released.
+     */
+    public int releaseRunningJobs() {
+        int released = 0;
+        for (String jobId : runningJobs.keySet()) {
+            released += jobRepository.defer(jobId, nodeId, 0);
+        }
+        return released;
+    }
+
+    private void poll() {
+        try {
+            abortCancelledJobs();
+
+            int free = slots.availablePermits();
+            if (free == 0 || !claiming) return;
+
+            List<TestJob> claimed = jobRepository.claim(nodeId, lease.toSeconds(), free, hostScheduler.getMaxPerHost());
+            for (TestJob job : claimed) {
+                String url = job.getPayload().getUrl();
+                HostScheduler.Permit permit = hostScheduler.tryAcquire(url);
+                if (permit == null) {
+                    // Host busy or too soon after its last run - put the job back without using an attempt
+                    hostScheduler.recordDeferred();
+                    jobRepository.defer(job.getId(), nodeId, hostScheduler.millisUntilFree(url));
+                    continue;
+                }
+
+                slots.acquireUninterruptibly();
+                runningJobs.put(job.getId(), job.getTestId());
+                try {
+                    pipelineExecutor.execute(() -> process(job, permit));
+                } catch (RuntimeException e) {
+                    // Executor full - hand the job back to the queue for the next poll, without using an attempt
+                    runningJobs.remove(job.getId());
+                    slots.release();
+                    permit.close();
+                    jobRepository.defer(job.getId(), nodeId, pollInterval.toMillis());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Job poll error: " + e.getMessage());
+        }
+    }
+
+    private void process(TestJob job, HostScheduler.Permit permit) {
+        try {
+            if (job.getAttempts() > maxAttempts) {
+                String reason = "Gave up after " + maxAttempts + " attempts";
+                testService.failPendingTest(job.getTestId(), reason);
+                finish(job, "failed", reason);
+                return;
+            }
+
+            System.out.println("👷 " + nodeId + " running job " + job.getId() + " (attempt " + job.getAttempts() + ")");
+            testJobService.execute(job.getTestId(), job.getPayload());
+            finish(job, "completed", null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            finish(job, "failed", e.getMessage());
+        } finally {
+            permit.close();
+            runningJobs.remove(job.getId());
+            slots.release();
+        }
+    }
+
+    /**
+     * Jobs running here that were cancelled through another node: abort their pipelines.
+     * The cancel already released the lease, so finishing them afterwards is a no-op.
+     */
+    private void abortCancelledJobs() {
+        if (runningJobs.isEmpty()) return;
+        for (String testId : jobRepository.findCancelledTestIds(Set.copyOf(runningJobs.keySet()))) {
+            cancellations.cancel(testId);
+        }
+    }
+
+    private void finish(TestJob job, String status, String error) {
+        int updated = jobRepository.finish(job.getId(), nodeId, status, error);
+        if (updated > 0 && job.getBatchId() != null) {
+            jobRepository.releaseBatchSlot(job.getBatchId());
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            if (!runningJobs.isEmpty()) {
+                jobRepository.renewLeases(nodeId, lease.toSeconds(), Set.copyOf(runningJobs.keySet()));
+            }
+        } catch (Exception e) {
+            System.err.println("Job lease renewal error: " + e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        // "pid@hostname" plus a short suffix so restarts never reuse a dead node's leases
+        return ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
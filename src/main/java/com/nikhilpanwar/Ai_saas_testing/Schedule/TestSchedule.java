@@ -0,0 +1,50 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * A test run repeated every {@code intervalSeconds}, fired by TestScheduleRunner on any node
+ */
+@Entity
+@Table(name = "test_schedules", indexes = {
+        @Index(name = "idx_test_schedules_due", columnList = "enabled, nextRunAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestSchedule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private TestRequestDTO payload; // stored without credentials or deadline
+
+    @Column(nullable = false)
+    private long intervalSeconds;
+
+    @Column(nullable = false)
+    private boolean enabled;
+
+    @Column(nullable = false)
+    private LocalDateTime nextRunAt; // claimed by the first node to see it due; advanced in the same transaction
+
+    private LocalDateTime lastRunAt;
+
+    private String lastTestId; // result of the latest run
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,26 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestScheduleDTO {
+
+    private String id;
+    private String url;
+    private Map<String, Object> testRequirements;
+    private long intervalMinutes;
+    private boolean enabled;
+    private LocalDateTime nextRunAt;
+    private LocalDateTime lastRunAt;
+    private String lastTestId;
+    private LocalDateTime createdAt;
+}
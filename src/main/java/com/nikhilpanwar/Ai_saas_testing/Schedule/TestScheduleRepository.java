@@ -0,0 +1,43 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TestScheduleRepository extends JpaRepository<TestSchedule, String> {
+
+    /**
+     * Lock up to {@code limit} enabled schedules that are due, skipping rows another node is
+     * firing. Must run inside the transaction that advances their nextRunAt.
+     */
+    @Query(value = """
+            SELECT * FROM test_schedules
+            WHERE enabled AND next_run_at <= :now
+            ORDER BY next_run_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<TestSchedule> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    List<TestSchedule> findAllByOrderByCreatedAtDesc();
+
+    @Transactional
+    @Modifying
+    @Query("update TestSchedule s set s.lastTestId = :testId, s.lastRunAt = :ranAt where s.id = :id")
+    int recordRun(@Param("id") String id, @Param("testId") String testId, @Param("ranAt") LocalDateTime ranAt);
+
+    /**
+     * Retry a claimed schedule that couldn't be started because the pipeline was full
+     */
+    @Transactional
+    @Modifying
+    @Query("update TestSchedule s set s.nextRunAt = :nextRunAt where s.id = :id")
+    int postpone(@Param("id") String id, @Param("nextRunAt") LocalDateTime nextRunAt);
+}
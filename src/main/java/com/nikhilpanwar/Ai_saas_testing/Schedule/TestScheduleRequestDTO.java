@@ -0,0 +1,15 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestScheduleRequestDTO {
+    private TestRequestDTO test; // credentials are not stored and not used by scheduled runs
+    private Integer intervalMinutes;
+    private boolean enabled = true; // Optional
+}
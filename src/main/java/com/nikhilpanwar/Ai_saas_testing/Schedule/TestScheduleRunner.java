@@ -0,0 +1,151 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import com.nikhilpanwar.Ai_saas_testing.Cluster.LeaderElection;
+import com.nikhilpanwar.Ai_saas_testing.Test.AdmissionRejectedException;
+import com.nikhilpanwar.Ai_saas_testing.Test.PipelineDrain;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestJobService;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import com.nikhilpanwar.Ai_saas_testing.Test.TestResultDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires due schedules as async test runs.
+ *
+ * Only the cluster leader polls. A due schedule is also locked with SKIP LOCKED and its nextRunAt
+ * advanced in the same transaction before the run is submitted, so even two nodes that briefly
+ * both think they lead - or a restart - never fire the same slot twice. A crash between the two
+ * loses that one run instead. lastRunAt is only set once the run was actually submitted.
+ *
+ * Runs go through normal admission: when the backlog is full the schedule is retried after the
+ * Retry-After estimate, and the rest of the poll waits for the next one.
+ */
+@Component
+public class TestScheduleRunner implements SmartLifecycle {
+
+    private final TestScheduleRepository scheduleRepository;
+    private final TestScheduleService scheduleService;
+    private final TestJobService testJobService;
+    private final PipelineDrain pipelineDrain;
+    private final LeaderElection leaderElection;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final int maxFiresPerPoll;
+
+    private final Counter submitted;
+    private final Counter deferred;
+    private final Counter errors;
+
+    private ScheduledExecutorService poller;
+    private volatile boolean running;
+
+    public TestScheduleRunner(TestScheduleRepository scheduleRepository,
+                              TestScheduleService scheduleService,
+                              TestJobService testJobService,
+                              PipelineDrain pipelineDrain,
+                              LeaderElection leaderElection,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry registry,
+                              @Value("${test.schedules.enabled:true}") boolean enabled,
+                              @Value("${test.schedules.poll-interval:5s}") Duration pollInterval,
+                              @Value("${test.schedules.max-fires-per-poll:20}") int maxFiresPerPoll) {
+        this.scheduleRepository = scheduleRepository;
+        this.scheduleService = scheduleService;
+        this.testJobService = testJobService;
+        this.pipelineDrain = pipelineDrain;
+        this.leaderElection = leaderElection;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.maxFiresPerPoll = maxFiresPerPoll;
+
+        this.submitted = Counter.builder("test.schedules.fired").tag("result", "submitted").register(registry);
+        this.deferred = Counter.builder("test.schedules.fired").tag("result", "deferred").register(registry);
+        this.errors = Counter.builder("test.schedules.fired").tag("result", "error").register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+
+        poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("test-schedules").daemon(true).factory());
+        poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void poll() {
+        try {
+            if (!leaderElection.isLeader() || !pipelineDrain.isAccepting()) return;
+
+            LocalDateTime now = LocalDateTime.now();
+            List<TestSchedule> claimed = transactionTemplate.execute(status -> {
+                List<TestSchedule> due = scheduleRepository.lockDue(now, maxFiresPerPoll);
+                for (TestSchedule schedule : due) {
+                    schedule.setNextRunAt(scheduleService.nextRun(schedule, now));
+                }
+                return due; // advanced on commit
+            });
+            if (claimed == null) return;
+
+            for (int i = 0; i < claimed.size(); i++) {
+                TestSchedule schedule = claimed.get(i);
+                try {
+                    fire(schedule, now);
+                } catch (AdmissionRejectedException e) {
+                    // At capacity - push this and the remaining claimed schedules back instead of piling on
+                    LocalDateTime retryAt = LocalDateTime.now().plusSeconds(e.getRetryAfterSeconds());
+                    for (TestSchedule skipped : claimed.subList(i, claimed.size())) {
+                        scheduleRepository.postpone(skipped.getId(), retryAt);
+                        deferred.increment();
+                    }
+                    System.out.println("⏸️ Backlog full, " + (claimed.size() - i) + " scheduled runs retry at " + retryAt);
+                    return;
+                } catch (Exception e) {
+                    errors.increment();
+                    System.err.println("Scheduled run " + schedule.getId() + " failed to start: " + e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Schedule poll error: " + e.getMessage());
+        }
+    }
+
+    private void fire(TestSchedule schedule, LocalDateTime firedAt) {
+        TestRequestDTO payload = schedule.getPayload();
+        // A run shouldn't outlive its own interval
+        TestRequestDTO request = new TestRequestDTO(payload.getUrl(), null, payload.getTestRequirements(),
+                payload.isBypassCache(), Instant.now().plusSeconds(schedule.getIntervalSeconds()));
+
+        TestResultDTO result = testJobService.submit(request);
+        scheduleRepository.recordRun(schedule.getId(), result.getId(), firedAt);
+        submitted.increment();
+        System.out.println("⏰ Scheduled run of " + payload.getUrl() + " queued as test " + result.getId());
+    }
+}
@@ -0,0 +1,133 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import com.nikhilpanwar.Ai_saas_testing.Test.TestRequestDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Recurring test runs. Each schedule fires once per interval at a fixed offset into it, taken
+ * from a hash of its id, so schedules with the same interval spread over the whole period instead
+ * of all firing on the minute. A small random delay of up to {@code jitter} of the interval is
+ * added on top of each run.
+ */
+@Service
+public class TestScheduleService {
+
+    private final TestScheduleRepository scheduleRepository;
+    private final Duration minInterval;
+    private final double jitter;
+
+    public TestScheduleService(TestScheduleRepository scheduleRepository,
+                               @Value("${test.schedules.min-interval:1m}") Duration minInterval,
+                               @Value("${test.schedules.jitter:0.1}") double jitter) {
+        this.scheduleRepository = scheduleRepository;
+        this.minInterval = minInterval;
+        this.jitter = Math.max(0, Math.min(jitter, 0.5));
+    }
+
+    public TestScheduleDTO create(TestScheduleRequestDTO request) {
+        TestRequestDTO test = request.getTest();
+        if (test == null || test.getUrl() == null || test.getUrl().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Schedule needs a test url");
+        }
+        Integer minutes = request.getIntervalMinutes();
+        if (minutes == null || Duration.ofMinutes(minutes).compareTo(minInterval) < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "intervalMinutes must be at least " + Math.max(1, minInterval.toMinutes()));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        TestSchedule schedule = scheduleRepository.save(TestSchedule.builder()
+                .payload(new TestRequestDTO(test.getUrl(), null, test.getTestRequirements(), test.isBypassCache(), null))
+                .intervalSeconds(minutes * 60L)
+                .enabled(request.isEnabled())
+                .nextRunAt(now)
+                .createdAt(now)
+                .build());
+        // The offset comes from the id, so it is only known once saved
+        schedule.setNextRunAt(nextRun(schedule, now));
+        scheduleRepository.save(schedule);
+
+        System.out.println("⏰ Scheduled " + test.getUrl() + " every " + minutes + "m, first run at " + schedule.getNextRunAt());
+        return convertToDTO(schedule);
+    }
+
+    public List<TestScheduleDTO> getSchedules() {
+        return scheduleRepository.findAllByOrderByCreatedAtDesc().stream()
+                .map(TestScheduleService::convertToDTO)
+                .toList();
+    }
+
+    public TestScheduleDTO getSchedule(String id) {
+        return scheduleRepository.findById(id)
+                .map(TestScheduleService::convertToDTO)
+                .orElseThrow(() -> new RuntimeException("Schedule not found"));
+    }
+
+    public TestScheduleDTO setEnabled(String id, boolean enabled) {
+        TestSchedule schedule = scheduleRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Schedule not found"));
+        if (enabled && !schedule.isEnabled()) {
+            // Resume at the next slot instead of catching up on the paused period
+            schedule.setNextRunAt(nextRun(schedule, LocalDateTime.now()));
+        }
+        schedule.setEnabled(enabled);
+        scheduleRepository.save(schedule);
+        return convertToDTO(schedule);
+    }
+
+    public boolean deleteSchedule(String id) {
+        if (scheduleRepository.existsById(id)) {
+            scheduleRepository.deleteById(id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * First slot of the schedule strictly after {@code after}, plus this run's jitter
+     */
+    LocalDateTime nextRun(TestSchedule schedule, LocalDateTime after) {
+        long maxJitter = (long) (schedule.getIntervalSeconds() * jitter);
+        long delay = maxJitter > 0 ? ThreadLocalRandom.current().nextLong(maxJitter + 1) : 0;
+        return nextSlot(schedule.getId(), schedule.getIntervalSeconds(), after).plusSeconds(delay);
+    }
+
+    /**
+     * Slots of a schedule are {@code offset + k * interval}, with the offset a stable hash of its id:
+     * the same on every node and across restarts
+     */
+    static LocalDateTime nextSlot(String scheduleId, long intervalSeconds, LocalDateTime after) {
+        CRC32 crc = new CRC32();
+        crc.update(scheduleId.getBytes(StandardCharsets.UTF_8));
+        long offset = crc.getValue() % intervalSeconds;
+
+        long t = after.toEpochSecond(ZoneOffset.UTC);
+        long slot = Math.floorDiv(t - offset, intervalSeconds) * intervalSeconds + offset + intervalSeconds;
+        return LocalDateTime.ofEpochSecond(slot, 0, ZoneOffset.UTC);
+    }
+
+    static TestScheduleDTO convertToDTO(TestSchedule schedule) {
+        return TestScheduleDTO.builder()
+                .id(schedule.getId())
+                .url(schedule.getPayload().getUrl())
+                .testRequirements(schedule.getPayload().getTestRequirements())
+                .intervalMinutes(schedule.getIntervalSeconds() / 60)
+                .enabled(schedule.isEnabled())
+                .nextRunAt(schedule.getNextRunAt())
+                .lastRunAt(schedule.getLastRunAt())
+                .lastTestId(schedule.getLastTestId())
+                .createdAt(schedule.getCreatedAt())
+                .build();
+    }
+}
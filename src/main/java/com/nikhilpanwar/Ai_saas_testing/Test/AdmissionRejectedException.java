@@ -0,0 +1,18 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+/**
+ * Thrown when the pipeline is at capacity; mapped to 429 with a Retry-After header
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+/**
+ * A run's deadline passed before a stage could start; the result is saved with status "timeout"
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
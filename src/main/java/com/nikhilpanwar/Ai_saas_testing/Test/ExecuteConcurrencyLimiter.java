@@ -0,0 +1,233 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.config.CallDeadline;
+import com.nikhilpanwar.Ai_saas_testing.config.RunCancellation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limit for calls to the Python /execute-tests endpoint.
+ *
+ * Each completed call is an RTT sample. While samples stay within {@code rtt-tolerance} times
+ * the long-term RTT and the limit is actually being used, the limit grows by one per call
+ * (additive increase). A slow sample or an error multiplies it by {@code backoff-ratio}
+ * (multiplicative decrease). Callers over the limit wait up to {@code max-wait}, or less when
+ * their run's deadline is nearer or the run is cancelled meanwhile.
+ *
+ * Calls we cut short ourselves - the run's deadline passed or its user cancelled it - say
+ * nothing about the executor's capacity and are not sampled.
+ */
+@Component
+public class ExecuteConcurrencyLimiter {
+
+    private static final double SHORT_RTT_WEIGHT = 0.3;  // tracks the last few calls
+    private static final double LONG_RTT_WEIGHT = 0.02;  // baseline the short RTT is compared against
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final Duration maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    private final Counter timeouts;
+    private final Counter drops;
+
+    public ExecuteConcurrencyLimiter(MeterRegistry registry,
+                                     @Value("${test.execute-limiter.enabled:true}") boolean enabled,
+                                     @Value("${test.execute-limiter.initial-limit:4}") int initialLimit,
+                                     @Value("${test.execute-limiter.min-limit:1}") int minLimit,
+                                     @Value("${test.execute-limiter.max-limit:32}") int maxLimit,
+                                     @Value("${test.execute-limiter.backoff-ratio:0.9}") double backoffRatio,
+                                     @Value("${test.execute-limiter.rtt-tolerance:2.0}") double rttTolerance,
+                                     @Value("${test.execute-limiter.max-wait:60s}") Duration maxWait) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.maxWait = maxWait;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("test.execute.limit", this, ExecuteConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on parallel /execute-tests calls")
+                .register(registry);
+        Gauge.builder("test.execute.in_flight", this, ExecuteConcurrencyLimiter::getInFlight)
+                .register(registry);
+        Gauge.builder("test.execute.rtt", this, l -> l.rttSeconds(false))
+                .tag("window", "short")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("test.execute.rtt", this, l -> l.rttSeconds(true))
+                .tag("window", "long")
+                .baseUnit("seconds")
+                .register(registry);
+        this.timeouts = Counter.builder("test.execute.limiter.timeouts")
+                .description("Calls that gave up waiting for an execute slot")
+                .register(registry);
+        this.drops = Counter.builder("test.execute.limit.decreases")
+                .description("Times the limit backed off because of latency or errors")
+                .register(registry);
+    }
+
+    /**
+     * Run one execute call once under the limit; the call's latency and outcome adjust the limit
+     */
+    public <T> T execute(Supplier<T> call) throws TimeoutException {
+        return execute(null, null, call);
+    }
+
+    /**
+     * {@link #execute(Supplier)} for a run with a deadline and a cancellation handle (either may be null)
+     */
+    public <T> T execute(Instant deadline, RunCancellation run, Supplier<T> call) throws TimeoutException {
+        if (!enabled) return call.get();
+
+        int inFlightAtStart = acquire(deadline, run);
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean abortedByUs = false;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } catch (RuntimeException e) {
+            abortedByUs = e instanceof RunCancelledException || CallDeadline.isPast(deadline)
+                    || (run != null && run.isCancelled());
+            throw e;
+        } finally {
+            if (abortedByUs) {
+                releaseUnsampled();
+            } else {
+                release(System.nanoTime() - start, failed, inFlightAtStart);
+            }
+        }
+    }
+
+    private int acquire(Instant deadline, RunCancellation run) throws TimeoutException {
+        long remaining = maxWait.toNanos();
+        boolean deadlineFirst = false;
+        if (deadline != null) {
+            long untilDeadline = Duration.between(Instant.now(), deadline).toNanos();
+            deadlineFirst = untilDeadline < remaining;
+            remaining = Math.min(remaining, untilDeadline);
+        }
+        if (run != null) {
+            run.onCancel(this::wakeWaiters); // a cancelled run stops waiting at once
+        }
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (run != null && run.isCancelled()) {
+                    throw new RunCancelledException("Cancelled while waiting for an execute slot");
+                }
+                if (remaining <= 0) {
+                    if (deadlineFirst) {
+                        throw new DeadlineExceededException("Deadline passed while waiting for an execute slot");
+                    }
+                    timeouts.increment();
+                    throw new TimeoutException("No execute slot free within " + maxWait.toSeconds()
+                            + "s (limit " + (int) limit + ")");
+                }
+                try {
+                    remaining = slotFreed.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TimeoutException("Interrupted while waiting for an execute slot");
+                }
+            }
+            return ++inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, boolean failed, int inFlightAtStart) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (longRttNanos == 0) {
+                shortRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+            } else {
+                shortRttNanos += SHORT_RTT_WEIGHT * (rttNanos - shortRttNanos);
+                longRttNanos += LONG_RTT_WEIGHT * (rttNanos - longRttNanos);
+            }
+
+            if (failed || shortRttNanos > longRttNanos * rttTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                drops.increment();
+            } else if (inFlightAtStart * 2 >= limit) {
+                // Only grow when the current limit is being used, otherwise idle periods inflate it
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void wakeWaiters() {
+        lock.lock();
+        try {
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseUnsampled() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double rttSeconds(boolean longWindow) {
+        lock.lock();
+        try {
+            return (longWindow ? longRttNanos : shortRttNanos) / TimeUnit.SECONDS.toNanos(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
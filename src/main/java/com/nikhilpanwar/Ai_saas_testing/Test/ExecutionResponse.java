@@ -0,0 +1,61 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed view of the Flask /execute-tests response, filled by {@link ExecutionResponseParser}.
+ * Screenshots are already written to disk by the time this object exists.
+ */
+@Data
+public class ExecutionResponse {
+
+    private Boolean success;
+    private String status;
+    private String duration;
+    private String browser;
+    private String error;
+    private List<String> logs = new ArrayList<>();
+    private List<Bug> bugs = new ArrayList<>();
+    private List<Recommendation> recommendations = new ArrayList<>();
+    private List<TestResult.Screenshot> screenshots = new ArrayList<>();
+    private List<String> screenshotErrors = new ArrayList<>();
+    private long screenshotBytes;  // decoded bytes written to disk
+    private long screenshotNanos;  // time spent decoding + writing screenshots
+
+    // ==================== NESTED CLASSES ====================
+
+    /**
+     * Bug as reported by Flask (extra fields like steps_to_reproduce are ignored)
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Bug {
+        private String bugId;
+        private String title;
+        private String description;
+        private String severity;
+    }
+
+    /**
+     * Recommendation as reported by Flask, before validation
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Recommendation {
+        private String recommendationId;
+        private String title;
+        private String description;
+        private String impact;
+        private String category;
+    }
+}
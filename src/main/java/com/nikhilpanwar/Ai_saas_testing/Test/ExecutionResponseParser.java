@@ -0,0 +1,215 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Token-by-token parser for the /execute-tests response.
+ *
+ * Each screenshots[].b64 value is decoded straight from the socket into its file, so a
+ * screenshot never exists on the heap as a String or byte[]. Peak memory per run stays at
+ * the parser's buffers no matter how many or how large the screenshots are.
+ */
+@Component
+@RequiredArgsConstructor
+public class ExecutionResponseParser {
+
+    // Folder to store screenshots locally (served to the frontend under /uploads/screenshots)
+    static final Path SCREENSHOT_DIR = Paths.get("uploads/screenshots");
+
+    private final ObjectMapper objectMapper;
+
+    public ExecutionResponse parse(InputStream body) throws IOException {
+        return parse(body, SCREENSHOT_DIR);
+    }
+
+    ExecutionResponse parse(InputStream body, Path screenshotDir) throws IOException {
+        ExecutionResponse response = new ExecutionResponse();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected JSON object from /execute-tests");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                switch (field) {
+                    case "success" -> response.setSuccess(value.isBoolean() ? parser.getBooleanValue() : null);
+                    case "status" -> response.setStatus(parser.getValueAsString());
+                    case "duration" -> response.setDuration(parser.getValueAsString());
+                    case "browser" -> response.setBrowser(parser.getValueAsString());
+                    case "error" -> response.setError(parser.getValueAsString());
+                    case "logs" -> readStrings(parser, response.getLogs());
+                    case "bugs" -> readObjects(parser, ExecutionResponse.Bug.class, response.getBugs());
+                    case "recommendations" ->
+                            readObjects(parser, ExecutionResponse.Recommendation.class, response.getRecommendations());
+                    case "screenshots" -> readScreenshots(parser, screenshotDir, response);
+                    default -> parser.skipChildren(); // e.g. the raw Playwright "results" tree
+                }
+            }
+        }
+        return response;
+    }
+
+    private void readStrings(JsonParser parser, List<String> target) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken().isStructStart()) {
+                target.add(parser.readValueAsTree().toString());
+            } else {
+                target.add(parser.getValueAsString());
+            }
+        }
+    }
+
+    private <T> void readObjects(JsonParser parser, Class<T> type, List<T> target) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                target.add(objectMapper.readValue(parser, type));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readScreenshots(JsonParser parser, Path screenshotDir, ExecutionResponse response) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String filename = null;
+            Path partFile = null;
+            String failure = null;
+
+            try {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+
+                    if ("filename".equals(field)) {
+                        filename = parser.getValueAsString();
+                    } else if ("b64".equals(field) && value == JsonToken.VALUE_STRING) {
+                        // filename may come after b64, so decode into a temp file and rename afterwards
+                        Files.createDirectories(screenshotDir);
+                        partFile = Files.createTempFile(screenshotDir, "shot-", ".part");
+                        long start = System.nanoTime();
+                        FailSoftOutputStream out = new FailSoftOutputStream(
+                                new BufferedOutputStream(Files.newOutputStream(partFile)));
+                        try (out) {
+                            response.setScreenshotBytes(response.getScreenshotBytes() + parser.readBinaryValue(out));
+                        }
+                        response.setScreenshotNanos(response.getScreenshotNanos() + System.nanoTime() - start);
+                        failure = out.failure;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Truncated body, or the call was aborted (deadline, cancel): drop the half-written file
+                if (partFile != null) Files.deleteIfExists(partFile);
+                throw e;
+            }
+
+            if (partFile == null) {
+                continue;
+            }
+
+            String name = safeFileName(filename);
+            if (failure == null) {
+                try {
+                    Files.move(partFile, screenshotDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                    response.getScreenshots().add(TestResult.Screenshot.builder()
+                            .url("/uploads/screenshots/" + name) // frontend route
+                            .caption(name)
+                            .build());
+                    System.out.println("  ✓ Saved: " + name);
+                    continue;
+                } catch (IOException e) {
+                    failure = e.getMessage();
+                }
+            }
+
+            Files.deleteIfExists(partFile);
+            response.getScreenshotErrors().add("⚠️ Failed to save screenshot: " + name);
+            System.err.println("Screenshot save error: " + failure);
+        }
+    }
+
+    /**
+     * Last path segment of the name the executor sent, or a random name when nothing usable is left
+     * (empty, "/", "..", or a name made only of dots)
+     */
+    static String safeFileName(String filename) {
+        if (filename != null) {
+            String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1).strip();
+            if (!name.isEmpty() && !name.chars().allMatch(c -> c == '.') && name.indexOf('\0') < 0) {
+                return name;
+            }
+        }
+        return UUID.randomUUID() + ".png";
+    }
+
+    /**
+     * Disk errors must not abort the parse half-way through a base64 token, so after the first
+     * failed write the remaining bytes of that screenshot are discarded and the failure recorded.
+     */
+    private static class FailSoftOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+        private String failure;
+
+        FailSoftOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (failure != null) return;
+            try {
+                delegate.write(b, off, len);
+            } catch (IOException e) {
+                failure = e.getMessage();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e.getMessage();
+            }
+        }
+    }
+}
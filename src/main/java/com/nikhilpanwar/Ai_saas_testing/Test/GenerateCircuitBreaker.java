@@ -0,0 +1,151 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Circuit breaker for calls to the Python /generate-tests endpoint.
+ *
+ * CLOSED: calls go through and the last {@code window-size} outcomes are kept. Once at least
+ * {@code minimum-calls} are recorded and the failure rate reaches {@code failure-rate-threshold}
+ * the circuit OPENs and calls are refused for {@code open-duration}. After that it is HALF_OPEN:
+ * up to {@code half-open-probes} calls are let through; one success closes the circuit again,
+ * one failure re-opens it.
+ */
+@Component
+public class GenerateCircuitBreaker {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Ring buffer of recent outcomes, true = failure
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    public GenerateCircuitBreaker(MeterRegistry registry,
+                                  @Value("${test.generate.circuit.enabled:true}") boolean enabled,
+                                  @Value("${test.generate.circuit.window-size:20}") int windowSize,
+                                  @Value("${test.generate.circuit.minimum-calls:5}") int minimumCalls,
+                                  @Value("${test.generate.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                  @Value("${test.generate.circuit.open-duration:30s}") Duration openDuration,
+                                  @Value("${test.generate.circuit.half-open-probes:1}") int halfOpenProbes) {
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+
+        Gauge.builder("test.generate.circuit.state", this, b -> b.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(registry);
+        for (State to : State.values()) {
+            transitions.put(to, Counter.builder("test.generate.circuit.transitions")
+                    .tag("to", to.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Whether a call may go out now; every permitted call must report back via onSuccess, onFailure
+     * or onCancelled
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!enabled) return true;
+
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probesInFlight >= halfOpenProbes) yield false;
+                probesInFlight++;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (!enabled) return;
+
+        if (state == State.HALF_OPEN) {
+            transition(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (!enabled) return;
+
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * A permitted call was abandoned for reasons unrelated to the service (e.g. the run's deadline)
+     */
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowPosition]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) windowFailures++;
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void transition(State to) {
+        System.out.println("🔌 Generate circuit " + state + " -> " + to);
+        state = to;
+        probesInFlight = 0;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.CLOSED) {
+            windowPosition = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+        transitions.get(to).increment();
+    }
+}
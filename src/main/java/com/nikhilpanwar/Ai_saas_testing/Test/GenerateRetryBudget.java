@@ -0,0 +1,83 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retries for /generate-tests.
+ *
+ * Every first attempt deposits {@code budget-ratio} of a token and every retry spends a whole
+ * one, so retries can add at most that fraction of extra load on top of real traffic (plus a
+ * small reserve of {@code max-tokens} after a quiet period). Backoff is "full jitter": a random
+ * delay between zero and base-backoff * 2^(attempt-1), capped at max-backoff.
+ */
+@Component
+public class GenerateRetryBudget {
+
+    private final int maxAttempts;
+    private final double ratio;
+    private final double maxTokens;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private double tokens;
+
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public GenerateRetryBudget(MeterRegistry registry,
+                               @Value("${test.generate.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${test.generate.retry.budget-ratio:0.2}") double ratio,
+                               @Value("${test.generate.retry.max-tokens:10}") double maxTokens,
+                               @Value("${test.generate.retry.base-backoff:200ms}") Duration baseBackoff,
+                               @Value("${test.generate.retry.max-backoff:2s}") Duration maxBackoff) {
+        this.maxAttempts = maxAttempts;
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.baseBackoffMillis = baseBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+
+        this.retries = Counter.builder("test.generate.retries").tag("result", "attempted").register(registry);
+        this.exhausted = Counter.builder("test.generate.retries").tag("result", "budget_exhausted").register(registry);
+    }
+
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Whether attempt number {@code attempt} (1-based) may be followed by another one
+     */
+    public boolean canRetry(int attempt) {
+        if (attempt >= maxAttempts) return false;
+        synchronized (this) {
+            if (tokens < 1) {
+                exhausted.increment();
+                return false;
+            }
+            tokens -= 1;
+        }
+        retries.increment();
+        return true;
+    }
+
+    /**
+     * Sleep before the retry following {@code attempt}; false if interrupted
+     */
+    public boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Politeness limits per target host: at most {@code max-concurrent-per-host} runs against one
+ * site at a time on this node, and run starts at least {@code min-spacing} apart. Runs against
+ * other hosts are not held up.
+ *
+ * Synchronous runs wait for their host via {@link #acquire}. Background runs never block a thread
+ * on a busy host: durable workers use {@link #tryAcquire} and put the job back with a not-before
+ * time (the claim query already skips hosts that are at the limit across all nodes), and
+ * in-memory runs come back through {@link #retryLater}.
+ */
+@Component
+public class HostScheduler implements DisposableBean {
+
+    /**
+     * Held for the duration of one run; closing it frees the host for the next one
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NO_LIMIT = () -> {
+    };
+
+    private final TestJobRepository jobRepository;
+    private final boolean enabled;
+    private final boolean durable;
+    private final int maxPerHost;
+    private final long spacingNanos;
+    private final Duration maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hostFreed = lock.newCondition();
+    private final Map<String, HostState> hosts = new HashMap<>(); // guarded by lock
+
+    private final MultiGauge queueDepth;
+    private final MultiGauge inFlight;
+    private final Counter deferred;
+    private final ScheduledExecutorService timer; // metrics refresh and retryLater
+
+    public HostScheduler(TestJobRepository jobRepository,
+                         MeterRegistry registry,
+                         @Value("${test.hosts.enabled:true}") boolean enabled,
+                         @Value("${test.jobs.durable:true}") boolean durable,
+                         @Value("${test.hosts.max-concurrent-per-host:2}") int maxPerHost,
+                         @Value("${test.hosts.min-spacing:2s}") Duration minSpacing,
+                         @Value("${test.hosts.max-wait:120s}") Duration maxWait,
+                         @Value("${test.hosts.metrics-interval:5s}") Duration metricsInterval) {
+        this.jobRepository = jobRepository;
+        this.enabled = enabled;
+        this.durable = durable;
+        this.maxPerHost = maxPerHost;
+        this.spacingNanos = minSpacing.toNanos();
+        this.maxWait = maxWait;
+
+        this.queueDepth = MultiGauge.builder("test.host.queue_depth")
+                .description("Runs waiting for their target host: local waiters plus queued/held jobs")
+                .register(registry);
+        this.inFlight = MultiGauge.builder("test.host.in_flight")
+                .description("Runs against each target host on this node")
+                .register(registry);
+        this.deferred = Counter.builder("test.host.deferred")
+                .description("Claimed jobs put back because their host was busy")
+                .register(registry);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+                .name("host-scheduler").daemon(true).factory());
+        if (enabled) {
+            long interval = metricsInterval.toMillis();
+            timer.scheduleWithFixedDelay(this::refreshMetrics, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getMaxPerHost() {
+        return enabled ? maxPerHost : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Wait until the url's host has a free slot and its spacing has passed, or reject with 429
+     */
+    public Permit acquire(String url) {
+        if (!enabled) return NO_LIMIT;
+
+        String host = hostOf(url);
+        long remaining = maxWait.toNanos();
+        lock.lock();
+        HostState state = hosts.computeIfAbsent(host, h -> new HostState());
+        state.waiting++;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (state.canStart(now)) {
+                    return start(state, now);
+                }
+                if (remaining <= 0) {
+                    throw new AdmissionRejectedException("Too many runs against " + host + ", retry later",
+                            Math.max(1, TimeUnit.NANOSECONDS.toSeconds(spacingNanos)));
+                }
+                // A slot frees up on release; spacing passes on its own
+                long wait = state.inFlight < maxPerHost ? state.nextStartNanos - now : remaining;
+                try {
+                    long timeout = Math.min(wait, remaining);
+                    remaining -= timeout - hostFreed.awaitNanos(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AdmissionRejectedException("Interrupted while waiting for " + host, 1);
+                }
+            }
+        } finally {
+            state.waiting--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the url's host if it can start right now, otherwise null
+     */
+    public Permit tryAcquire(String url) {
+        if (!enabled) return NO_LIMIT;
+
+        String host = hostOf(url);
+        lock.lock();
+        try {
+            HostState state = hosts.computeIfAbsent(host, h -> new HostState());
+            long now = System.nanoTime();
+            return state.canStart(now) ? start(state, now) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough time until the url's host may start another run, used as a not-before for deferred jobs
+     */
+    public long millisUntilFree(String url) {
+        lock.lock();
+        try {
+            HostState state = hosts.get(hostOf(url));
+            if (state == null) return 0;
+            long untilSpacing = TimeUnit.NANOSECONDS.toMillis(state.nextStartNanos - System.nanoTime());
+            return state.inFlight < maxPerHost ? Math.max(0, untilSpacing) : Math.max(1000, untilSpacing);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordDeferred() {
+        deferred.increment();
+    }
+
+    /**
+     * Run {@code retry} once the url's host is likely free again; for in-memory runs that found it
+     * busy, which give their thread back instead of waiting
+     */
+    public void retryLater(String url, Runnable retry) {
+        deferred.increment();
+        // +1: millisUntilFree rounds down, and a retry just before the spacing ends finds the host busy again
+        timer.schedule(retry, Math.max(50, millisUntilFree(url) + 1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lower-cased host of a url; the whole string if it has none, so bad urls share one bucket each
+     */
+    public static String hostOf(String url) {
+        if (url == null) return "";
+        try {
+            String host = URI.create(url.trim()).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : url.trim();
+        } catch (IllegalArgumentException e) {
+            return url.trim();
+        }
+    }
+
+    private Permit start(HostState state, long now) {
+        state.inFlight++;
+        state.nextStartNanos = now + spacingNanos;
+        return new Permit() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                lock.lock();
+                try {
+                    if (closed) return;
+                    closed = true;
+                    state.inFlight--;
+                    hostFreed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    private void refreshMetrics() {
+        try {
+            Map<String, Long> depth = new TreeMap<>();
+            Map<String, Long> running = new TreeMap<>();
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                hosts.values().removeIf(state -> state.isIdle(now));
+                hosts.forEach((host, state) -> {
+                    if (state.waiting > 0) depth.put(host, (long) state.waiting);
+                    if (state.inFlight > 0) running.put(host, (long) state.inFlight);
+                });
+            } finally {
+                lock.unlock();
+            }
+            if (durable) {
+                for (TestJobRepository.HostBacklog backlog : jobRepository.countWaitingByHost()) {
+                    depth.merge(backlog.getHost(), backlog.getJobs(), Long::sum);
+                }
+            }
+
+            queueDepth.register(rows(depth), true);
+            inFlight.register(rows(running), true);
+        } catch (Exception e) {
+            System.err.println("Host metrics refresh error: " + e.getMessage());
+        }
+    }
+
+    private static List<MultiGauge.Row<?>> rows(Map<String, Long> values) {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>(values.size());
+        values.forEach((host, value) -> rows.add(MultiGauge.Row.of(Tags.of("host", host), value)));
+        return rows;
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+    }
+
+    private class HostState {
+        int inFlight;
+        int waiting;
+        long nextStartNanos = System.nanoTime();
+
+        boolean canStart(long now) {
+            return inFlight < maxPerHost && now - nextStartNanos >= 0;
+        }
+
+        boolean isIdle(long now) {
+            return inFlight == 0 && waiting == 0 && now - nextStartNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key of a POST /api/test/generate request and the result it produced
+ */
+@Entity
+@Table(name = "test_idempotency_keys", indexes = {
+        @Index(name = "idx_test_idempotency_keys_expires", columnList = "expiresAt")
+})
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyKey {
+
+    @Id
+    @Column(length = IdempotencyStore.MAX_KEY_LENGTH)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 80)
+    private String requestHash; // a reused key must come with the same request
+
+    private String testId; // null while the first request is still running
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,78 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * Take the key for a new request: 1 if it was free (or only held by an expired entry), 0 if
+     * another request already has it. Atomic, so concurrent retries can't both start a run.
+     * The key is only leased for {@code leaseSeconds} until the request completes, so a node that
+     * dies mid-request doesn't block retries for the whole ttl.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO test_idempotency_keys (idempotency_key, request_hash, test_id, created_at, expires_at)
+            VALUES (:key, :requestHash, NULL, now(), now() + (:leaseSeconds * interval '1 second'))
+            ON CONFLICT (idempotency_key) DO UPDATE
+            SET request_hash = EXCLUDED.request_hash, test_id = NULL,
+                created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+            WHERE test_idempotency_keys.expires_at < now()
+            """, nativeQuery = true)
+    int reserve(@Param("key") String key,
+                @Param("requestHash") String requestHash,
+                @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Extend the lease of keys whose requests are still running on this node
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_idempotency_keys
+            SET expires_at = now() + (:leaseSeconds * interval '1 second')
+            WHERE idempotency_key IN (:keys) AND test_id IS NULL
+            """, nativeQuery = true)
+    int renew(@Param("keys") Collection<String> keys, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Map the key to its result for the full ttl
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_idempotency_keys
+            SET test_id = :testId, expires_at = now() + (:ttlSeconds * interval '1 second')
+            WHERE idempotency_key = :key
+            """, nativeQuery = true)
+    int complete(@Param("key") String key, @Param("testId") String testId, @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Give up a reservation whose request failed before producing a result, so a retry can run
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.idempotencyKey = :key and k.testId is null")
+    int release(@Param("key") String key);
+
+    /**
+     * Delete up to {@code limit} expired keys
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM test_idempotency_keys
+            WHERE idempotency_key IN (
+                SELECT idempotency_key FROM test_idempotency_keys WHERE expires_at < now() LIMIT :limit)
+            """, nativeQuery = true)
+    int purgeExpired(@Param("limit") int limit);
+}
@@ -0,0 +1,136 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.Cluster.LeaderElection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key support for POST /api/test/generate, shared by all nodes through
+ * test_idempotency_keys. Each key maps to the result id of the first request that used it for
+ * {@code ttl}; a retry with the same key gets that result back instead of a new run.
+ *
+ * While the first request runs its key is only leased for {@code lease}, renewed by this node,
+ * so the key frees up soon after a node dies mid-request instead of answering 409 for the ttl.
+ *
+ * Rows hold only a hash of the request and the result id. Expired rows are deleted in small
+ * batches every {@code purge-interval} by the cluster leader.
+ */
+@Component
+public class IdempotencyStore implements DisposableBean {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final int PURGE_BATCH = 1000;
+
+    private final IdempotencyKeyRepository repository;
+    private final Duration ttl;
+    private final Duration lease;
+
+    private final Counter replays;
+
+    // Keys reserved by requests still running on this node, and the timer renewing their leases
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService renewer;
+
+    public IdempotencyStore(IdempotencyKeyRepository repository,
+                            MeterRegistry registry,
+                            LeaderElection leaderElection,
+                            @Value("${test.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${test.idempotency.lease:${test.jobs.lease:60s}}") Duration lease,
+                            @Value("${test.idempotency.purge-interval:1m}") Duration purgeInterval) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.replays = Counter.builder("test.idempotency.replays")
+                .description("Requests answered with the result of an earlier request with the same key")
+                .register(registry);
+        leaderElection.whileLeader("Idempotency key purge", purgeInterval, this::purgeExpired);
+
+        this.renewer = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+                .name("idempotency-renewer").daemon(true).factory());
+        long renewInterval = Math.max(1000, lease.toMillis() / 3);
+        renewer.scheduleAtFixedRate(this::renewLeases, renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Claim {@code key} for a request. Empty if it is new - run the request, then call
+     * {@link #complete} or {@link #release}. Otherwise the id of the result it already produced.
+     * 409 while the first request is still running, 422 if the key came with a different request.
+     */
+    public Optional<String> reserve(String key, String requestHash) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        if (repository.reserve(key, requestHash, lease.toSeconds()) > 0) {
+            inProgress.add(key);
+            return Optional.empty();
+        }
+
+        IdempotencyKey existing = repository.findById(key)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Request with this " + HEADER + " is being retried concurrently"));
+        if (!existing.getRequestHash().equals(requestHash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+        }
+        if (existing.getTestId() == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still in progress");
+        }
+        replays.increment();
+        return Optional.of(existing.getTestId());
+    }
+
+    public void complete(String key, String testId) {
+        inProgress.remove(key);
+        repository.complete(key, testId, ttl.toSeconds());
+    }
+
+    public void release(String key) {
+        inProgress.remove(key);
+        repository.release(key);
+    }
+
+    @Override
+    public void destroy() {
+        renewer.shutdownNow();
+    }
+
+    private void renewLeases() {
+        if (inProgress.isEmpty()) return;
+        try {
+            repository.renew(Set.copyOf(inProgress), lease.toSeconds());
+        } catch (RuntimeException e) {
+            System.err.println("Idempotency key renewal error: " + e.getMessage());
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        try {
+            int purged = repository.purgeExpired(PURGE_BATCH);
+            if (purged > 0) {
+                System.out.println("🧹 Purged " + purged + " expired idempotency keys in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now) + "ms");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Idempotency key purge error: " + e.getMessage());
+        }
+    }
+}
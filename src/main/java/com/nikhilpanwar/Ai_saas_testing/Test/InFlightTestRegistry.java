@@ -0,0 +1,102 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight registry for identical test requests.
+ * While a pipeline for a given request key is running, later identical requests attach to its
+ * future instead of triggering another AI generation and browser run.
+ */
+@Component
+public class InFlightTestRegistry {
+
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public InFlightTestRegistry(MeterRegistry registry) {
+        this.coalesced = Counter.builder("test.pipeline.coalesced")
+                .description("Requests served by an identical in-flight run")
+                .register(registry);
+        Gauge.builder("test.pipeline.inflight.unique", inFlight, ConcurrentHashMap::size).register(registry);
+    }
+
+    /**
+     * A running pipeline. testId is the persisted "processing" result, or null for synchronous runs.
+     */
+    public record InFlight(String testId, CompletableFuture<TestResultDTO> result) {
+    }
+
+    /**
+     * Identity of a request for de-duplication: same url + testRequirements (the script cache key)
+     * produce the same run. A bypassCache request only joins other bypassCache runs, so it never
+     * gets a cached script, and a request with credentials only joins runs with the same ones, so
+     * no caller is handed a result produced for someone else's session.
+     */
+    public static String keyFor(String scriptKey, TestRequestDTO requestDTO) {
+        String key = requestDTO.isBypassCache() ? scriptKey + ":fresh" : scriptKey;
+        TestRequestDTO.Credentials credentials = requestDTO.getCredentials();
+        if (credentials == null) return key;
+        return key + ":as:" + sha256(credentials.getUsername() + "\n" + credentials.getPassword());
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Optional<InFlight> find(String key) {
+        return Optional.ofNullable(inFlight.get(key));
+    }
+
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * Run the pipeline, or wait for the identical one already running and return its result.
+     * Callers can tell the two apart by comparing the returned id with their own.
+     */
+    public TestResultDTO execute(String key, String testId, Supplier<TestResultDTO> pipeline) {
+        InFlight mine = new InFlight(testId, new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.increment();
+            System.out.println("🔗 Attaching to in-flight run for the same request");
+            try {
+                return existing.result().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+
+        try {
+            TestResultDTO result = pipeline.get();
+            mine.result().complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
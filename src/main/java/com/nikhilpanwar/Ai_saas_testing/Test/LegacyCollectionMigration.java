@@ -0,0 +1,102 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One-off copy of the old @ElementCollection tables (test_logs, test_screenshots, test_bugs,
+ * test_recommendations) into the JSONB columns of test_results.
+ *
+ * Walks test_results by id in small batches so each transaction stays short on large tables. Once
+ * a table has been copied it is renamed to *_legacy, which makes the migration a no-op on later
+ * startups and leaves the data around until someone drops it by hand.
+ *
+ * Every batch and the rename take a transaction-scoped advisory lock and re-check that the table
+ * is still there, so nodes starting together take turns instead of failing on each other's rename.
+ */
+@Component
+public class LegacyCollectionMigration implements ApplicationRunner {
+
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('legacy-collection-migration'))";
+
+    private record Batch(String lastId, int updated) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public LegacyCollectionMigration(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${test.storage.migrate-legacy-collections:true}") boolean enabled,
+                                     @Value("${test.storage.migration-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+
+        migrate("test_logs", "logs", "jsonb_agg(c.log)");
+        migrate("test_screenshots", "screenshots",
+                "jsonb_agg(jsonb_build_object('url', c.url, 'caption', c.caption))");
+        migrate("test_bugs", "bugs",
+                "jsonb_agg(jsonb_build_object('bugId', c.bug_id, 'title', c.title, "
+                        + "'description', c.description, 'severity', c.severity))");
+        migrate("test_recommendations", "recommendations",
+                "jsonb_agg(jsonb_build_object('recommendationId', c.recommendation_id, 'title', c.title, "
+                        + "'description', c.description, 'impact', c.impact, 'category', c.category))");
+    }
+
+    private void migrate(String table, String column, String aggregate) {
+        if (!tableExists(table)) return;
+
+        System.out.println("🚚 Migrating " + table + " into test_results." + column);
+        // One page of ids after the last one; returns where it ended and how many rows it filled
+        String sql = "WITH page AS (SELECT id FROM test_results WHERE id > ? ORDER BY id LIMIT ?), "
+                + "filled AS (UPDATE test_results t SET " + column + " = COALESCE("
+                + "(SELECT " + aggregate + " FROM " + table + " c WHERE c.test_result_id = t.id), '[]'::jsonb) "
+                + "FROM page WHERE t.id = page.id AND t." + column + " IS NULL RETURNING 1) "
+                + "SELECT (SELECT max(id) FROM page), (SELECT count(*) FROM filled)";
+
+        int total = 0;
+        String lastId = "";
+        while (lastId != null) {
+            String after = lastId;
+            Batch batch = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute(LOCK_SQL);
+                if (!tableExists(table)) return null; // another node finished it meanwhile
+                return jdbcTemplate.queryForObject(sql,
+                        (rs, i) -> new Batch(rs.getString(1), rs.getInt(2)), after, batchSize);
+            });
+            if (batch == null) {
+                System.out.println("✅ " + table + " was migrated by another node");
+                return;
+            }
+            total += batch.updated();
+            lastId = batch.lastId();
+        }
+
+        Boolean renamed = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK_SQL);
+            if (!tableExists(table)) return false;
+            jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + table + "_legacy");
+            return true;
+        });
+        if (Boolean.TRUE.equals(renamed)) {
+            System.out.println("✅ Migrated " + total + " results from " + table + " (kept as " + table + "_legacy)");
+        }
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+}
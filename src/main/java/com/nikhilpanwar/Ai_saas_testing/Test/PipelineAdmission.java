@@ -0,0 +1,157 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded admission in front of the pipeline.
+ *
+ * Synchronous runs take one of {@code max-in-flight} slots, waiting in a queue of at most
+ * {@code max-queue} callers for up to {@code max-queue-wait}. Async submissions are refused once
+ * {@code max-queue} runs are already waiting to start. Overflow fails fast with a Retry-After
+ * estimated from recent stage latencies instead of letting every run time out together.
+ */
+@Component
+public class PipelineAdmission {
+
+    private final PipelineMetrics pipelineMetrics;
+    private final TestJobRepository jobRepository;
+    private final boolean durable;
+    private final int maxInFlight;
+    private final int asyncParallelism;
+    private final int maxQueue;
+    private final Duration maxQueueWait;
+
+    private final Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger asyncPending = new AtomicInteger(); // in-memory mode only
+    private final AtomicInteger lastBacklog = new AtomicInteger();
+
+    private final Timer queueWait;
+    private final Counter rejectedSync;
+    private final Counter rejectedAsync;
+
+    public PipelineAdmission(PipelineMetrics pipelineMetrics,
+                             TestJobRepository jobRepository,
+                             MeterRegistry registry,
+                             @Value("${test.jobs.durable:true}") boolean durable,
+                             @Value("${test.admission.max-in-flight:8}") int maxInFlight,
+                             @Value("${test.jobs.workers:8}") int asyncParallelism,
+                             @Value("${test.admission.max-queue:50}") int maxQueue,
+                             @Value("${test.admission.max-queue-wait:60s}") Duration maxQueueWait) {
+        this.pipelineMetrics = pipelineMetrics;
+        this.jobRepository = jobRepository;
+        this.durable = durable;
+        this.maxInFlight = maxInFlight;
+        this.asyncParallelism = asyncParallelism;
+        this.maxQueue = maxQueue;
+        this.maxQueueWait = maxQueueWait;
+        this.slots = new Semaphore(maxInFlight, true);
+
+        Gauge.builder("test.admission.in_flight", slots, s -> maxInFlight - s.availablePermits())
+                .description("Synchronous runs currently executing")
+                .register(registry);
+        Gauge.builder("test.admission.queue_depth", waiting, AtomicInteger::get)
+                .tag("path", "sync")
+                .register(registry);
+        Gauge.builder("test.admission.queue_depth", lastBacklog, AtomicInteger::get)
+                .tag("path", "async")
+                .description("Async runs waiting to start, as of the last submission")
+                .register(registry);
+        this.queueWait = Timer.builder("test.admission.wait")
+                .description("Time synchronous runs waited for a slot")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejectedSync = Counter.builder("test.admission.rejected").tag("path", "sync").register(registry);
+        this.rejectedAsync = Counter.builder("test.admission.rejected").tag("path", "async").register(registry);
+    }
+
+    /**
+     * Run a synchronous pipeline once a slot is free, or reject if the wait queue is full
+     */
+    public <T> T admitSync(Supplier<T> pipeline) {
+        if (!slots.tryAcquire()) {
+            if (waiting.incrementAndGet() > maxQueue) {
+                waiting.decrementAndGet();
+                rejectedSync.increment();
+                throw reject(maxQueue, maxInFlight);
+            }
+            long start = System.nanoTime();
+            try {
+                if (!slots.tryAcquire(maxQueueWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejectedSync.increment();
+                    throw reject(waiting.get(), maxInFlight);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectedSync.increment();
+                throw reject(waiting.get(), maxInFlight);
+            } finally {
+                waiting.decrementAndGet();
+                queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        try {
+            return pipeline.get();
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Check there is room for one more background run; call {@link #asyncFinished()} when an
+     * in-memory run completes
+     */
+    public void admitAsync() {
+        int backlog = durable ? jobRepository.countQueuedUpTo(maxQueue + 1) : asyncPending.get();
+        lastBacklog.set(backlog);
+        if (backlog >= maxQueue) {
+            rejectedAsync.increment();
+            throw reject(backlog, asyncParallelism);
+        }
+        if (!durable) asyncPending.incrementAndGet();
+    }
+
+    public void asyncFinished() {
+        if (!durable) asyncPending.decrementAndGet();
+    }
+
+    public int getSyncInFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    /**
+     * Seconds until a background run behind {@code queuedAhead} others is likely to start
+     */
+    public long estimateAsyncRetryAfterSeconds(int queuedAhead) {
+        return estimateRetryAfterSeconds(queuedAhead, asyncParallelism);
+    }
+
+    /**
+     * Seconds until a slot is likely free: the queue ahead drains {@code parallelism} runs per recent
+     * run time (max-in-flight for synchronous runs, the job workers for background ones)
+     */
+    private long estimateRetryAfterSeconds(int queuedAhead, int parallelism) {
+        double runSeconds = Math.max(1.0, pipelineMetrics.recentRunTime().toMillis() / 1000.0);
+        long estimate = (long) Math.ceil(runSeconds * (queuedAhead + 1) / Math.max(1, parallelism));
+        return Math.max(1, Math.min(estimate, 600));
+    }
+
+    private AdmissionRejectedException reject(int queuedAhead, int parallelism) {
+        long retryAfter = estimateRetryAfterSeconds(queuedAhead, parallelism);
+        return new AdmissionRejectedException(
+                "Test pipeline is at capacity, retry in " + retryAfter + "s", retryAfter);
+    }
+}
@@ -0,0 +1,169 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJobWorker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shutdown phase for test runs. When the context closes, new submissions are refused with 503,
+ * the job worker stops claiming, and runs already in progress get {@code grace-period} to finish.
+ * Jobs still running after that go back to the queue for another node (without using an attempt)
+ * and their pipelines are stopped without saving anything. In-memory mode has no queue to hand
+ * runs back to, so its unfinished runs, started or not, are stopped and failed instead.
+ *
+ * Stops before TestJobWorker (which keeps the leases alive meanwhile) and before the web server's
+ * own graceful shutdown, so result polling keeps working while runs drain.
+ */
+@Component
+public class PipelineDrain implements SmartLifecycle {
+
+    private static final long PROGRESS_LOG_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final TestCancellationRegistry runs;
+    private final PipelineAdmission admission;
+    private final TestJobWorker jobWorker;
+    private final TestJobService testJobService;
+    private final boolean durable;
+    private final Duration gracePeriod;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+
+    private final Counter handedBack;
+
+    public PipelineDrain(TestCancellationRegistry runs,
+                         PipelineAdmission admission,
+                         TestJobWorker jobWorker,
+                         TestJobService testJobService,
+                         MeterRegistry registry,
+                         @Value("${test.jobs.durable:true}") boolean durable,
+                         @Value("${test.shutdown.grace-period:60s}") Duration gracePeriod) {
+        this.runs = runs;
+        this.admission = admission;
+        this.jobWorker = jobWorker;
+        this.testJobService = testJobService;
+        this.durable = durable;
+        this.gracePeriod = gracePeriod;
+
+        Gauge.builder("test.shutdown.draining", this, d -> d.accepting ? 0 : 1)
+                .description("1 while this node drains its test runs for shutdown")
+                .register(registry);
+        Gauge.builder("test.shutdown.runs_in_progress", this, PipelineDrain::inProgress)
+                .description("Runs this node is still finishing")
+                .register(registry);
+        this.handedBack = Counter.builder("test.shutdown.handed_back")
+                .description("Runs stopped unfinished at the end of the grace period, re-queued or (in memory mode) failed")
+                .register(registry);
+    }
+
+    /**
+     * Refuse new work once shutdown has started
+     */
+    public void checkAccepting() {
+        if (!accepting) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Server is shutting down, please retry");
+        }
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        drain();
+        running = false;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        // Drain on our own thread so the other shutdown phases can time out independently
+        Thread.ofPlatform().name("pipeline-drain").start(() -> {
+            try {
+                stop();
+            } finally {
+                callback.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain() {
+        accepting = false;
+        jobWorker.stopClaiming();
+
+        int inProgress = inProgress();
+        if (inProgress == 0) return;
+        System.out.println("🛬 Shutting down: waiting up to " + gracePeriod.toSeconds() + "s for "
+                + inProgress + " test runs to finish");
+
+        long start = System.nanoTime();
+        long deadline = start + gracePeriod.toNanos();
+        long nextLog = start + PROGRESS_LOG_NANOS;
+        while ((inProgress = inProgress()) > 0 && System.nanoTime() - deadline < 0) {
+            if (System.nanoTime() - nextLog >= 0) {
+                long left = TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime());
+                System.out.println("⏳ Draining: " + inProgress + " test runs in progress, " + left + "s left");
+                nextLog += PROGRESS_LOG_NANOS;
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (inProgress == 0) {
+            System.out.println("✅ All test runs finished after "
+                    + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "s");
+            return;
+        }
+
+        String syncLeft = admission.getSyncInFlight() > 0
+                ? ", " + admission.getSyncInFlight() + " synchronous runs left to the web server" : "";
+        if (!durable) {
+            // Nothing survives this node: fail queued and running results, then abort the pipelines
+            int failed = testJobService.failLocalRuns("Interrupted by server shutdown - please run it again");
+            runs.handOffAll();
+            handedBack.increment(failed);
+            System.out.println("↩️ Grace period over: " + failed + " in-memory runs failed" + syncLeft);
+            return;
+        }
+
+        // Release the leases first so finishing the aborted jobs can't mark them completed
+        int released = jobWorker.releaseRunningJobs();
+        int stopped = runs.handOffAll();
+        handedBack.increment(stopped);
+        System.out.println("↩️ Grace period over: " + released + " jobs back on the queue, "
+                + stopped + " runs stopped" + syncLeft);
+    }
+
+    /**
+     * Background runs (claimed jobs, or queued and running in-memory runs) plus synchronous requests
+     */
+    private int inProgress() {
+        int background = Math.max(runs.runningCount(),
+                Math.max(jobWorker.getRunningJobCount(), testJobService.getLocalRunCount()));
+        return background + admission.getSyncInFlight();
+    }
+}
@@ -0,0 +1,107 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-stage latency histograms and outcome counters for the generate/execute pipeline.
+ * Exported through /actuator/prometheus.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String GENERATE = "generate";
+    public static final String EXECUTE = "execute";       // includes streaming the screenshots to disk
+    public static final String SCREENSHOTS = "screenshots"; // decode + write share of EXECUTE
+    public static final String PERSIST = "persist";
+    public static final String CONVERT = "convert";
+
+    // Flask statuses we keep as-is; anything else is tagged "other" to keep cardinality bounded
+    private static final Set<String> KNOWN_OUTCOMES = Set.of("passed", "failed", "timeout", "error", "cancelled", "generation_failed");
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new HashMap<>();
+    private final DistributionSummary bugsPerRun;
+    private final DistributionSummary recommendationsPerRun;
+    private final Counter screenshotBytes;
+
+    // Exponentially weighted recent latency per stage, for estimates like Retry-After
+    private static final double EWMA_WEIGHT = 0.2;
+    private final Map<String, Double> recentStageNanos = new ConcurrentHashMap<>();
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (String stage : new String[]{GENERATE, EXECUTE, SCREENSHOTS, PERSIST, CONVERT}) {
+            stageTimers.put(stage, Timer.builder("test.pipeline.stage")
+                    .description("Time spent in each pipeline stage")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.bugsPerRun = DistributionSummary.builder("test.pipeline.bugs")
+                .description("Bugs reported per run")
+                .register(registry);
+        this.recommendationsPerRun = DistributionSummary.builder("test.pipeline.recommendations")
+                .description("Recommendations reported per run")
+                .register(registry);
+        this.screenshotBytes = Counter.builder("test.pipeline.screenshot.bytes")
+                .description("Decoded screenshot bytes written to disk")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordStage(String stage, long nanos) {
+        stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+        recentStageNanos.merge(stage, (double) nanos,
+                (previous, sample) -> previous + EWMA_WEIGHT * (sample - previous));
+    }
+
+    /**
+     * Recent end-to-end time of one run (generate + execute + persist), 0 until a run completes
+     */
+    public Duration recentRunTime() {
+        double nanos = recentStageNanos.getOrDefault(GENERATE, 0.0)
+                + recentStageNanos.getOrDefault(EXECUTE, 0.0)
+                + recentStageNanos.getOrDefault(PERSIST, 0.0);
+        return Duration.ofNanos((long) nanos);
+    }
+
+    public void recordOutcome(String status, int bugs, int recommendations, long screenshotBytesWritten) {
+        String outcome = status != null && KNOWN_OUTCOMES.contains(status) ? status : "other";
+        registry.counter("test.pipeline.outcomes", "outcome", outcome).increment();
+        bugsPerRun.record(bugs);
+        recommendationsPerRun.record(recommendations);
+        screenshotBytes.increment(screenshotBytesWritten);
+    }
+
+    public void recordGenerationFailure() {
+        registry.counter("test.pipeline.outcomes", "outcome", "generation_failed").increment();
+    }
+
+    /**
+     * Generation skipped because the circuit was open; cached = a stale script for the url was reused
+     */
+    public void recordGenerationFallback(boolean cached) {
+        registry.counter("test.generate.fallbacks", "result", cached ? "cached" : "none").increment();
+    }
+}
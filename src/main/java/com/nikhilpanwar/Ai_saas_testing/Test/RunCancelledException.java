@@ -0,0 +1,11 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+/**
+ * The run was cancelled by its user; thrown in place of the aborted call's own error
+ */
+public class RunCancelledException extends RuntimeException {
+
+    public RunCancelledException(String message) {
+        super(message);
+    }
+}
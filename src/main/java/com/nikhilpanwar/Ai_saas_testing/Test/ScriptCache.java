@@ -0,0 +1,221 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache of AI-generated Playwright scripts.
+ *
+ * Keyed by a SHA-256 of the normalized url + canonical testRequirements. Credentials are not
+ * part of the key: /generate-tests ignores them, so the script never depends on or contains them.
+ * Entries expire after a TTL and the least recently used entry is evicted once full.
+ * The newest script per url is also indexed so generation can fall back to it during an outage.
+ */
+@Component
+public class ScriptCache {
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("\\d");
+    private static final Pattern QUERY_VALUE = Pattern.compile("=[^&]*");
+
+    private final ObjectMapper canonicalMapper;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, String> latestKeyByUrl = new HashMap<>(); // guarded by entries
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expirations;
+
+    public ScriptCache(ObjectMapper objectMapper,
+                       MeterRegistry registry,
+                       @Value("${test.script-cache.enabled:true}") boolean enabled,
+                       @Value("${test.script-cache.max-entries:500}") int maxEntries,
+                       @Value("${test.script-cache.ttl:1h}") Duration ttl) {
+        this.canonicalMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ScriptCache.this.maxEntries) {
+                    sizeEvictions.increment();
+                    latestKeyByUrl.remove(eldest.getValue().url(), eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("test.script.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("test.script.cache.requests").tag("result", "miss").register(registry);
+        this.sizeEvictions = Counter.builder("test.script.cache.evictions").tag("cause", "size").register(registry);
+        this.expirations = Counter.builder("test.script.cache.evictions").tag("cause", "expired").register(registry);
+        Gauge.builder("test.script.cache.size", this, ScriptCache::size).register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a request: hash of normalized url + canonical JSON of testRequirements
+     */
+    public String keyFor(TestRequestDTO requestDTO) {
+        return sha256(normalizeUrl(requestDTO.getUrl()) + "\n" + canonicalRequirements(requestDTO));
+    }
+
+    /**
+     * Key shared by requests whose urls probably render the same page template, e.g.
+     * /product/123 and /product/456 with the same testRequirements
+     */
+    public String templateKeyFor(TestRequestDTO requestDTO) {
+        return sha256(templateUrl(requestDTO.getUrl()) + "\n" + canonicalRequirements(requestDTO));
+    }
+
+    private String canonicalRequirements(TestRequestDTO requestDTO) {
+        try {
+            return canonicalMapper.writeValueAsString(requestDTO.getTestRequirements());
+        } catch (JsonProcessingException e) {
+            return String.valueOf(requestDTO.getTestRequirements());
+        }
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) return Optional.empty();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.createdAt > ttlNanos) {
+                entries.remove(key);
+                latestKeyByUrl.remove(entry.url(), key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(entry.script);
+        }
+    }
+
+    public void put(String key, String url, String script) {
+        if (!enabled) return;
+
+        String normalizedUrl = normalizeUrl(url);
+        synchronized (entries) {
+            entries.put(key, new Entry(script, normalizedUrl, System.nanoTime()));
+            latestKeyByUrl.put(normalizedUrl, key);
+        }
+    }
+
+    /**
+     * Most recently generated script for a url, whatever its requirements, ignoring the TTL.
+     * Only meant as a stale fallback while the AI service is unavailable.
+     */
+    public Optional<String> latestForUrl(String url) {
+        if (!enabled) return Optional.empty();
+
+        synchronized (entries) {
+            String key = latestKeyByUrl.get(normalizeUrl(url));
+            Entry entry = key != null ? entries.get(key) : null;
+            return entry != null ? Optional.of(entry.script) : Optional.empty();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Lower-cases scheme and host, drops default ports, fragments and trailing slashes
+     */
+    static String normalizeUrl(String url) {
+        if (url == null) return "";
+        try {
+            URI uri = new URI(url.trim()).normalize();
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url.trim();
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+            while (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT)
+                    + (port == -1 ? "" : ":" + port)
+                    + path
+                    + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        } catch (Exception e) {
+            return url.trim();
+        }
+    }
+
+    /**
+     * Normalized url with id-like path segments (anything containing a digit) replaced by {id}
+     * and query values replaced by {v}
+     */
+    static String templateUrl(String url) {
+        String normalized = normalizeUrl(url);
+        int queryStart = normalized.indexOf('?');
+        String base = queryStart < 0 ? normalized : normalized.substring(0, queryStart);
+        String query = queryStart < 0 ? null : normalized.substring(queryStart + 1);
+
+        int pathStart = base.indexOf("://") >= 0 ? base.indexOf('/', base.indexOf("://") + 3) : 0;
+        StringBuilder template = new StringBuilder(pathStart < 0 ? base : base.substring(0, pathStart));
+        if (pathStart >= 0) {
+            for (String segment : base.substring(pathStart).split("/")) {
+                if (segment.isEmpty()) continue;
+                template.append('/').append(ID_SEGMENT.matcher(segment).find() ? "{id}" : segment);
+            }
+        }
+        if (query != null) {
+            template.append('?').append(QUERY_VALUE.matcher(query).replaceAll("=\\{v}"));
+        }
+        return template.toString();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(String script, String url, long createdAt) {
+    }
+}
@@ -0,0 +1,192 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nikhilpanwar.Ai_saas_testing.Cluster.LeaderElection;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pass over results left in "processing" by a node that died mid-pipeline, run by each node
+ * that becomes cluster leader - at startup, or when it takes over from a leader that died.
+ *
+ * Results whose job is still queued or running are left alone: the job queue resumes those
+ * once their lease runs out. The rest are orphans. An orphan with a job row is re-queued from
+ * that job's stored payload (url, testRequirements and deadline, all as submitted). Only without
+ * a job row is the run re-queued from the url alone, and then only when a generated script was
+ * stored on the result, since nothing else of the original request survives. Everything else is
+ * failed with the reason, so clients stop polling.
+ *
+ * Only runs with durable jobs: in-memory runs live on whichever node took them, with no job row,
+ * so a live run on another node can't be told apart from an orphan.
+ *
+ * The scan walks (status, createdAt, id) in pages and stops after {@code max-duration}, so it
+ * stays cheap on large tables (or when leadership is lost); whatever it didn't reach is picked up
+ * by the next leader.
+ */
+@Component
+public class StuckTestRecovery {
+
+    private static final String PAGE_SQL = """
+            SELECT r.id, r.created_at, r.website_url, r.script, j.id AS job_id, j.status AS job_status
+            FROM test_results r
+            LEFT JOIN test_jobs j ON j.test_id = r.id
+            WHERE r.status = 'processing' AND r.created_at < ?
+              AND (r.created_at, r.id) > (?, ?)
+            ORDER BY r.created_at, r.id
+            LIMIT ?
+            """;
+
+    private static final String REQUEUE_JOB_SQL = """
+            UPDATE test_jobs
+            SET status = 'queued', lease_owner = NULL, lease_expires_at = NULL, not_before = NULL,
+                last_error = 'Re-queued by startup recovery', updated_at = now()
+            WHERE id = ? AND status IN ('completed', 'failed')
+            """;
+
+    private static final String CLOSE_RESULT_SQL = """
+            UPDATE test_results
+            SET status = ?, completed_at = now(), logs = CAST(? AS jsonb)
+            WHERE id = ? AND status = 'processing'
+            """;
+
+    private record Orphan(String testId, LocalDateTime createdAt, String url, String script,
+                          String jobId, String jobStatus) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TestJobService testJobService;
+    private final MeterRegistry registry;
+    private final LeaderElection leaderElection;
+    private final boolean enabled;
+    private final Duration staleAfter;
+    private final int pageSize;
+    private final Duration maxDuration;
+
+    public StuckTestRecovery(JdbcTemplate jdbcTemplate,
+                             ObjectMapper objectMapper,
+                             TestJobService testJobService,
+                             MeterRegistry registry,
+                             LeaderElection leaderElection,
+                             @Value("${test.recovery.enabled:true}") boolean enabled,
+                             @Value("${test.jobs.durable:true}") boolean durable,
+                             @Value("${test.recovery.stale-after:${test.jobs.lease:60s}}") Duration staleAfter,
+                             @Value("${test.recovery.page-size:500}") int pageSize,
+                             @Value("${test.recovery.max-duration:60s}") Duration maxDuration) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.testJobService = testJobService;
+        this.registry = registry;
+        this.leaderElection = leaderElection;
+        this.enabled = enabled && durable;
+        this.staleAfter = staleAfter;
+        this.pageSize = pageSize;
+        this.maxDuration = maxDuration;
+        leaderElection.onElected(this::recover);
+    }
+
+    public void recover() {
+        if (!enabled) return;
+
+        long stopAt = System.nanoTime() + maxDuration.toNanos();
+        Timestamp staleBefore = Timestamp.valueOf(LocalDateTime.now().minus(staleAfter));
+        Timestamp afterCreatedAt = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+        String afterId = "";
+
+        int requeued = 0;
+        int failed = 0;
+        int scanned = 0;
+        boolean finished = false;
+        while (System.nanoTime() - stopAt < 0 && leaderElection.isLeader()) {
+            List<Orphan> page = jdbcTemplate.query(PAGE_SQL, (rs, i) -> new Orphan(
+                            rs.getString("id"),
+                            rs.getTimestamp("created_at").toLocalDateTime(),
+                            rs.getString("website_url"),
+                            rs.getString("script"),
+                            rs.getString("job_id"),
+                            rs.getString("job_status")),
+                    staleBefore, afterCreatedAt, afterId, pageSize);
+            if (page.isEmpty()) {
+                finished = true;
+                break;
+            }
+            scanned += page.size();
+            Orphan last = page.get(page.size() - 1);
+            afterCreatedAt = Timestamp.valueOf(last.createdAt());
+            afterId = last.testId();
+
+            List<Object[]> jobsToRequeue = new ArrayList<>();
+            List<Object[]> resultsToClose = new ArrayList<>();
+            for (Orphan orphan : page) {
+                String jobStatus = orphan.jobStatus();
+                if ("held".equals(jobStatus) || "queued".equals(jobStatus) || "running".equals(jobStatus)) {
+                    continue; // still owned by the job queue
+                }
+                if ("cancelled".equals(jobStatus)) {
+                    resultsToClose.add(close(orphan, "cancelled", "🛑 Cancelled by user"));
+                } else if (orphan.jobId() != null) {
+                    jobsToRequeue.add(new Object[]{orphan.jobId()}); // keeps the job's payload as submitted
+                } else if (orphan.script() != null && !orphan.script().startsWith("//")) {
+                    if (requeueWithScript(orphan)) requeued++;
+                    else failed++;
+                } else {
+                    resultsToClose.add(close(orphan, "failed",
+                            "❌ Interrupted by a server restart before a script was generated - please run it again"));
+                    failed++;
+                }
+            }
+            if (!jobsToRequeue.isEmpty()) {
+                for (int updated : jdbcTemplate.batchUpdate(REQUEUE_JOB_SQL, jobsToRequeue)) {
+                    if (updated > 0) requeued++; // 0 when the job moved on meanwhile
+                }
+            }
+            if (!resultsToClose.isEmpty()) jdbcTemplate.batchUpdate(CLOSE_RESULT_SQL, resultsToClose);
+
+            if (page.size() < pageSize) {
+                finished = true;
+                break;
+            }
+        }
+
+        registry.counter("test.recovery.results", "action", "requeued").increment(requeued);
+        registry.counter("test.recovery.results", "action", "failed").increment(failed);
+        if (requeued > 0 || failed > 0 || !finished) {
+            System.out.println("🩺 Recovery scanned " + scanned + " in-progress results: "
+                    + requeued + " re-queued, " + failed + " failed"
+                    + (finished ? "" : " (stopped early, rest left to the next leader)"));
+        }
+    }
+
+    /**
+     * No job row, so no payload: the stored script lets the pipeline skip generation, and only
+     * the url is needed besides it
+     */
+    private boolean requeueWithScript(Orphan orphan) {
+        try {
+            testJobService.requeue(orphan.testId(), new TestRequestDTO(orphan.url(), null, null, false, null));
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("Could not re-queue test " + orphan.testId() + ": " + e.getMessage());
+            jdbcTemplate.update(CLOSE_RESULT_SQL, close(orphan, "failed",
+                    "❌ Could not re-queue after a server restart: " + e.getMessage()));
+            return false;
+        }
+    }
+
+    private Object[] close(Orphan orphan, String status, String reason) {
+        try {
+            return new Object[]{status, objectMapper.writeValueAsString(List.of(reason)), orphan.testId()};
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.config.RunCancellation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation handles of the pipelines running on this node, by test id.
+ * Runs on other nodes are cancelled through the job table (see TestJobWorker).
+ */
+@Component
+public class TestCancellationRegistry {
+
+    private final ConcurrentHashMap<String, RunCancellation> running = new ConcurrentHashMap<>();
+    private final Counter cancelledQueued;
+    private final Counter cancelledRunning;
+
+    public TestCancellationRegistry(MeterRegistry registry) {
+        this.cancelledQueued = Counter.builder("test.pipeline.cancellations")
+                .tag("state", "queued")
+                .description("Runs cancelled before they started")
+                .register(registry);
+        this.cancelledRunning = Counter.builder("test.pipeline.cancellations")
+                .tag("state", "running")
+                .description("Runs cancelled while in progress")
+                .register(registry);
+    }
+
+    public RunCancellation register(String testId) {
+        return running.computeIfAbsent(testId, id -> new RunCancellation());
+    }
+
+    public void unregister(String testId, RunCancellation run) {
+        running.remove(testId, run);
+    }
+
+    /**
+     * Abort the run if it is in progress on this node; false if it isn't
+     */
+    public boolean cancel(String testId) {
+        RunCancellation run = running.get(testId);
+        if (run == null) return false;
+        run.cancel();
+        return true;
+    }
+
+    /**
+     * Stop every run on this node without storing results, for others to redo; returns how many
+     */
+    public int handOffAll() {
+        running.values().forEach(RunCancellation::handOff);
+        return running.size();
+    }
+
+    public int runningCount() {
+        return running.size();
+    }
+
+    public void recordCancelled(boolean wasRunning) {
+        (wasRunning ? cancelledRunning : cancelledQueued).increment();
+    }
+}
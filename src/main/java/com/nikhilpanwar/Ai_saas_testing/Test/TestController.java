@@ -1,11 +1,22 @@
 package com.nikhilpanwar.Ai_saas_testing.Test;
 
+import com.nikhilpanwar.Ai_saas_testing.Batch.TestBatchDTO;
+import com.nikhilpanwar.Ai_saas_testing.Batch.TestBatchRequestDTO;
+import com.nikhilpanwar.Ai_saas_testing.Batch.TestBatchService;
+import com.nikhilpanwar.Ai_saas_testing.Schedule.TestScheduleDTO;
+import com.nikhilpanwar.Ai_saas_testing.Schedule.TestScheduleRequestDTO;
+import com.nikhilpanwar.Ai_saas_testing.Schedule.TestScheduleService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -14,17 +25,111 @@ import java.util.stream.Collectors;
 public class TestController {
 
     private final TestService testService;
+    private final TestJobService testJobService;
+    private final TestBatchService testBatchService;
+    private final PipelineDrain pipelineDrain;
+    private final IdempotencyStore idempotencyStore;
+    private final TestScheduleService testScheduleService;
 
-    public TestController(TestService testService) {
+    public TestController(TestService testService, TestJobService testJobService, TestBatchService testBatchService,
+                          PipelineDrain pipelineDrain, IdempotencyStore idempotencyStore,
+                          TestScheduleService testScheduleService) {
         this.testService = testService;
+        this.testJobService = testJobService;
+        this.testBatchService = testBatchService;
+        this.pipelineDrain = pipelineDrain;
+        this.idempotencyStore = idempotencyStore;
+        this.testScheduleService = testScheduleService;
     }
 
     @PostMapping("/generate")
-    public ResponseEntity<TestResultDTO> generateTest(@RequestBody TestRequestDTO request) {
+    public ResponseEntity<TestResultDTO> generateTest(@RequestBody TestRequestDTO request,
+                                                      @RequestParam(defaultValue = "false") boolean async,
+                                                      @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+                                                      String idempotencyKey) {
+        pipelineDrain.checkAccepting(); // 503 while this node shuts down
+        if (idempotencyKey == null) {
+            return runGenerate(request, async);
+        }
+
+        // A retry with the same key gets the first request's result instead of another run
+        String requestHash = testService.requestKey(request) + (async ? ":async" : ":sync");
+        Optional<String> previous = idempotencyStore.reserve(idempotencyKey, requestHash);
+        if (previous.isPresent()) {
+            TestResultDTO existing = testService.getTestResult(previous.get());
+            return ResponseEntity.status("processing".equals(existing.getStatus()) ? HttpStatus.ACCEPTED : HttpStatus.OK)
+                    .location(URI.create("/api/test/result/" + existing.getId()))
+                    .body(existing);
+        }
+        try {
+            ResponseEntity<TestResultDTO> response = runGenerate(request, async);
+            idempotencyStore.complete(idempotencyKey, response.getBody().getId());
+            return response;
+        } catch (RuntimeException e) {
+            idempotencyStore.release(idempotencyKey);
+            throw e;
+        }
+    }
+
+    private ResponseEntity<TestResultDTO> runGenerate(TestRequestDTO request, boolean async) {
+        if (async) {
+            TestResultDTO pending = testJobService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/test/result/" + pending.getId()))
+                    .body(pending); // 202 - poll /result/{testId} for the outcome
+        }
         TestResultDTO resultDTO = testService.generateAndExecuteTest(request);
         return ResponseEntity.ok(resultDTO);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<TestBatchDTO> submitBatch(@RequestBody TestBatchRequestDTO request) {
+        pipelineDrain.checkAccepting();
+        TestBatchDTO batch = testBatchService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/test/batch/" + batch.getId()))
+                .body(batch); // 202 - poll /batch/{batchId} for the aggregate status
+    }
+
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<TestBatchDTO> getBatch(@PathVariable String batchId) {
+        return ResponseEntity.ok(testBatchService.getBatch(batchId));
+    }
+
+    @PostMapping("/schedules")
+    public ResponseEntity<TestScheduleDTO> createSchedule(@RequestBody TestScheduleRequestDTO request) {
+        TestScheduleDTO schedule = testScheduleService.create(request);
+        return ResponseEntity.created(URI.create("/api/test/schedules/" + schedule.getId()))
+                .body(schedule); // 201 - each run shows up as a normal test result, latest in lastTestId
+    }
+
+    @GetMapping("/schedules")
+    public ResponseEntity<List<TestScheduleDTO>> getSchedules() {
+        return ResponseEntity.ok(testScheduleService.getSchedules());
+    }
+
+    @GetMapping("/schedules/{scheduleId}")
+    public ResponseEntity<TestScheduleDTO> getSchedule(@PathVariable String scheduleId) {
+        return ResponseEntity.ok(testScheduleService.getSchedule(scheduleId));
+    }
+
+    /**
+     * Pause or resume a schedule; resuming skips the runs missed while paused
+     */
+    @PatchMapping("/schedules/{scheduleId}")
+    public ResponseEntity<TestScheduleDTO> setScheduleEnabled(@PathVariable String scheduleId,
+                                                              @RequestParam boolean enabled) {
+        return ResponseEntity.ok(testScheduleService.setEnabled(scheduleId, enabled));
+    }
+
+    @DeleteMapping("/schedules/{scheduleId}")
+    public ResponseEntity<Void> deleteSchedule(@PathVariable String scheduleId) {
+        if (testScheduleService.deleteSchedule(scheduleId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/result/{testId}")
     public ResponseEntity<TestResultDTO> getTestResult(@PathVariable String testId) {
         return ResponseEntity.ok(testService.getTestResult(testId));
@@ -35,6 +140,28 @@ public class TestController {
         return ResponseEntity.ok(testService.getAllTestResults());
     }
 
+    @GetMapping("/results/page")
+    public ResponseEntity<TestResultPageDTO> getResultPage(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, 200));
+        return ResponseEntity.ok(testService.getTestResultPage(cursor, pageSize));
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage(), "retryAfterSeconds", e.getRetryAfterSeconds()));
+    }
+
+    /**
+     * Stop a run that is still in progress; 409 if it already finished
+     */
+    @RequestMapping(value = "/cancel/{testId}", method = {RequestMethod.POST, RequestMethod.DELETE})
+    public ResponseEntity<TestResultDTO> cancelTest(@PathVariable String testId) {
+        return ResponseEntity.ok(testJobService.cancel(testId));
+    }
+
     @DeleteMapping("/delete/{testId}")
     public ResponseEntity<Void> deleteTestResult(@PathVariable String testId) {
         boolean deleted = testService.deleteTestResult(testId);
@@ -0,0 +1,362 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJob;
+import com.nikhilpanwar.Ai_saas_testing.Job.TestJobRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class TestJobService {
+
+    private final TestService testService;
+    private final InFlightTestRegistry inFlightTests;
+    private final TestCancellationRegistry cancellations;
+    private final PipelineAdmission admission;
+    private final HostScheduler hostScheduler;
+    private final TestJobRepository jobRepository;
+    private final TaskExecutor pipelineExecutor;
+    private final boolean durable;
+    private final Duration templateWait;
+
+    // In-memory mode: results queued or running on this node, and whether shutdown has stopped them
+    private final Set<String> localRuns = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    public TestJobService(TestService testService,
+                          InFlightTestRegistry inFlightTests,
+                          TestCancellationRegistry cancellations,
+                          PipelineAdmission admission,
+                          HostScheduler hostScheduler,
+                          TestJobRepository jobRepository,
+                          @Qualifier("testPipelineExecutor") TaskExecutor pipelineExecutor,
+                          @Value("${test.jobs.durable:true}") boolean durable,
+                          @Value("${test.batch.template-wait:5m}") Duration templateWait) {
+        this.testService = testService;
+        this.inFlightTests = inFlightTests;
+        this.cancellations = cancellations;
+        this.admission = admission;
+        this.hostScheduler = hostScheduler;
+        this.jobRepository = jobRepository;
+        this.pipelineExecutor = pipelineExecutor;
+        this.durable = durable;
+        this.templateWait = templateWait;
+    }
+
+    /**
+     * Persist a "processing" result and run the pipeline in the background.
+     * Clients poll GET /api/test/result/{testId} for the outcome.
+     *
+     * In durable mode the run is written to test_jobs and picked up by a TestJobWorker on any
+     * node; otherwise it goes straight onto this node's pipeline executor.
+     */
+    public TestResultDTO submit(TestRequestDTO requestDTO) {
+        checkQueueable(requestDTO);
+        testService.withDefaultDeadline(requestDTO); // the budget includes time spent queued
+        String key = testService.requestKey(requestDTO);
+
+        // Same request already running in the background: hand out its id instead of a new run
+        Optional<InFlightTestRegistry.InFlight> running = inFlightTests.find(key)
+                .filter(inFlight -> inFlight.testId() != null);
+        if (running.isPresent()) {
+            inFlightTests.recordCoalesced();
+            System.out.println("🔗 Reusing in-flight test " + running.get().testId() + " for: " + requestDTO.getUrl());
+            return testService.getTestResult(running.get().testId());
+        }
+
+        admission.admitAsync(); // 429 when the backlog is already full
+
+        TestResultDTO pending;
+        try {
+            pending = testService.createPendingTest(requestDTO);
+        } catch (RuntimeException e) {
+            admission.asyncFinished();
+            throw e;
+        }
+        String testId = pending.getId();
+        enqueue(testId, requestDTO);
+
+        System.out.println("📥 Queued test " + testId + " for: " + requestDTO.getUrl());
+        return pending;
+    }
+
+    /**
+     * Queue a result that is already "processing" once more, e.g. one orphaned by a crash
+     * (see StuckTestRecovery). Throws, with the result failed, if it can't be scheduled.
+     */
+    public void requeue(String testId, TestRequestDTO requestDTO) {
+        testService.withDefaultDeadline(requestDTO);
+        admission.admitAsync();
+        enqueue(testId, requestDTO);
+    }
+
+    /**
+     * Durable jobs are stored in the shared test_jobs table, where credentials don't belong.
+     * Rather than dropping them unnoticed, such requests are refused (400): they can run
+     * synchronously, or without credentials, which neither Flask endpoint uses.
+     */
+    public void checkQueueable(TestRequestDTO requestDTO) {
+        if (durable && requestDTO.getCredentials() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Queued runs don't store credentials - send the test without them, or run it synchronously");
+        }
+    }
+
+    /**
+     * Hand an admitted pending result to the job table or the pipeline executor
+     */
+    private void enqueue(String testId, TestRequestDTO requestDTO) {
+        try {
+            if (durable) {
+                jobRepository.save(TestJob.builder()
+                        .testId(testId)
+                        .payload(requestDTO) // never has credentials (see checkQueueable)
+                        .host(HostScheduler.hostOf(requestDTO.getUrl()))
+                        .status("queued")
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } else {
+                localRuns.add(testId);
+                pipelineExecutor.execute(new Lane(List.of(testId), List.of(requestDTO), admission::asyncFinished));
+            }
+        } catch (RuntimeException e) {
+            localRuns.remove(testId);
+            admission.asyncFinished();
+            // Queue insert failed or executor saturated - don't leave the result stuck in "processing"
+            testService.failPendingTest(testId, "Could not schedule test: " + e.getMessage());
+            if (e instanceof TaskRejectedException) {
+                throw new AdmissionRejectedException("Pipeline executor is full",
+                        admission.estimateAsyncRetryAfterSeconds(0));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Run the pipeline for a pending result, sharing the outcome of an identical in-flight run if
+     * there is one. Failures are recorded on the result rather than thrown.
+     * A batch run without its own deadline gets the default budget from here, as it may have been
+     * held for a long time behind the rest of its batch.
+     */
+    public void execute(String testId, TestRequestDTO requestDTO) {
+        testService.withDefaultDeadline(requestDTO);
+        String key = testService.requestKey(requestDTO);
+        try {
+            TestResultDTO result = inFlightTests.execute(key, testId,
+                    () -> testService.completePendingTest(testId, requestDTO));
+            if (!testId.equals(result.getId())) {
+                // Raced with an identical run that started first - share its outcome
+                testService.linkPendingTest(testId, result.getId());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            testService.failPendingTest(testId, "Pipeline error: " + e.getMessage());
+        } finally {
+            localRuns.remove(testId);
+        }
+    }
+
+    /**
+     * In-memory runs queued or running on this node
+     */
+    public int getLocalRunCount() {
+        return localRuns.size();
+    }
+
+    /**
+     * Shutdown in in-memory mode, where no queue survives this node: stop the lanes from starting
+     * anything else and fail every result that hasn't finished, so clients stop polling.
+     * Returns how many were failed.
+     */
+    public int failLocalRuns(String reason) {
+        stopping = true;
+        int failed = 0;
+        for (String testId : List.copyOf(localRuns)) {
+            try {
+                testService.failIfProcessing(testId, reason);
+                failed++;
+            } catch (RuntimeException e) {
+                System.err.println("Could not fail test " + testId + " on shutdown: " + e.getMessage());
+            }
+            localRuns.remove(testId);
+        }
+        return failed;
+    }
+
+    /**
+     * Stop a result that is still in progress. A queued job is taken off the queue; a running one
+     * has its outbound call aborted and its executor node told to stop the browser, here or on
+     * whichever node holds it (that node's worker notices the job's status within a poll interval).
+     */
+    public TestResultDTO cancel(String testId) {
+        TestResultDTO cancelled = testService.cancelPendingTest(testId); // 409 if already finished
+        boolean wasRunning = cancellations.cancel(testId);
+
+        if (durable) {
+            for (TestJobRepository.CancelledJob job : jobRepository.cancel(testId)) {
+                wasRunning |= "running".equals(job.getPreviousStatus());
+                // A queued or running batch job held one of the batch's slots - pass it on
+                if (job.getBatchId() != null && !"held".equals(job.getPreviousStatus())) {
+                    jobRepository.releaseBatchSlot(job.getBatchId());
+                }
+            }
+        }
+
+        cancellations.recordCancelled(wasRunning);
+        System.out.println("🛑 Cancelled test " + testId + (wasRunning ? " while running" : " before it started"));
+        return cancelled;
+    }
+
+    /**
+     * In-memory mode: runs pending results one after another on the pipeline executor, sharing
+     * {@code next} with the other lanes of a batch. When the next result's host is busy the lane
+     * gives its thread back and resumes once the host is likely free, like a deferred durable job,
+     * so runs against other hosts keep flowing and a busy host never fails a run. A result with an
+     * unfinished {@code startAfter} future (its batch template script) parks the lane the same way.
+     */
+    private class Lane implements Runnable {
+        private final List<String> testIds;
+        private final List<TestRequestDTO> requests;
+        private final List<CompletableFuture<?>> startAfter;
+        private final AtomicInteger next;
+        private final Runnable onFinished;
+        private int current = -1; // result waiting for its host, -1 for none
+
+        Lane(List<String> testIds, List<TestRequestDTO> requests, Runnable onFinished) {
+            this(testIds, requests, null, new AtomicInteger(), onFinished);
+        }
+
+        Lane(List<String> testIds, List<TestRequestDTO> requests, List<CompletableFuture<?>> startAfter,
+             AtomicInteger next, Runnable onFinished) {
+            this.testIds = testIds;
+            this.requests = requests;
+            this.startAfter = startAfter;
+            this.next = next;
+            this.onFinished = onFinished;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                if (stopping) {
+                    onFinished.run(); // shutting down - what's left is failed by PipelineDrain
+                    return;
+                }
+                if (current < 0) {
+                    current = next.getAndIncrement();
+                    if (current >= testIds.size()) {
+                        onFinished.run();
+                        return;
+                    }
+                }
+                CompletableFuture<?> gate = startAfter != null ? startAfter.get(current) : null;
+                if (gate != null && !gate.isDone()) {
+                    gate.whenComplete((r, e) -> resume());
+                    return;
+                }
+                String url = requests.get(current).getUrl();
+                HostScheduler.Permit permit = hostScheduler.tryAcquire(url);
+                if (permit == null) {
+                    hostScheduler.retryLater(url, this::resume);
+                    return;
+                }
+                try (permit) {
+                    execute(testIds.get(current), requests.get(current));
+                }
+                current = -1;
+            }
+        }
+
+        private void resume() {
+            try {
+                pipelineExecutor.execute(this);
+            } catch (TaskRejectedException e) {
+                hostScheduler.retryLater(requests.get(current).getUrl(), this::resume); // executor full, later
+            }
+        }
+    }
+
+    /**
+     * Start the pending results of a batch with at most {@code concurrency} of them in flight.
+     *
+     * Durable mode queues the first {@code concurrency} jobs and holds the rest; each finished batch
+     * job releases the next held one (see TestJobWorker). In-memory mode runs {@code concurrency}
+     * lanes on the pipeline executor that take the next result until none are left.
+     * {@code onFinished} runs once nothing of the batch is left waiting on this node.
+     *
+     * A result whose {@code startAfter} future is still running (the batch generating its template
+     * script) doesn't start before it completes. Durable jobs wait with a not-before of
+     * {@code template-wait}, cleared on completion, so they still start if this node dies meanwhile.
+     */
+    public void dispatchBatch(String batchId, List<String> testIds, List<TestRequestDTO> requests,
+                              List<CompletableFuture<?>> startAfter, int concurrency, Runnable onFinished) {
+        if (durable) {
+            List<TestJob> jobs = new ArrayList<>(testIds.size());
+            Map<CompletableFuture<?>, List<String>> waiting = new IdentityHashMap<>();
+            LocalDateTime submittedAt = LocalDateTime.now();
+            for (int i = 0; i < testIds.size(); i++) {
+                CompletableFuture<?> gate = startAfter.get(i);
+                boolean waits = gate != null && !gate.isDone();
+                if (waits) {
+                    waiting.computeIfAbsent(gate, g -> new ArrayList<>()).add(testIds.get(i));
+                }
+                jobs.add(TestJob.builder()
+                        .testId(testIds.get(i))
+                        .payload(requests.get(i))
+                        .host(HostScheduler.hostOf(requests.get(i).getUrl()))
+                        .status(i < concurrency ? "queued" : "held")
+                        .batchId(batchId)
+                        .notBefore(waits ? submittedAt.plus(templateWait) : null)
+                        .createdAt(submittedAt.plusNanos(i * 1000L)) // held jobs are released in order
+                        .build());
+            }
+            jobRepository.saveAll(jobs);
+            waiting.forEach((gate, ids) -> gate.whenComplete((r, e) -> jobRepository.startWaiting(ids)));
+            onFinished.run();
+            return;
+        }
+
+        int laneCount = Math.min(concurrency, testIds.size());
+        if (pipelineExecutor instanceof ThreadPoolTaskExecutor pool) {
+            laneCount = Math.min(laneCount, pool.getCorePoolSize()); // more lanes than threads would only queue
+        }
+        localRuns.addAll(testIds);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger lanes = new AtomicInteger(laneCount);
+        Runnable laneFinished = () -> {
+            if (lanes.decrementAndGet() == 0) onFinished.run();
+        };
+        for (int started = 0; started < laneCount; started++) {
+            try {
+                pipelineExecutor.execute(new Lane(testIds, requests, startAfter, next, laneFinished));
+            } catch (TaskRejectedException e) {
+                // Lanes already running will drain the batch; with none running the caller fails it
+                int remaining = lanes.addAndGet(-(laneCount - started));
+                if (started == 0) {
+                    testIds.forEach(localRuns::remove);
+                    throw e;
+                }
+                if (remaining == 0) onFinished.run();
+                System.out.println("⚠️ Batch " + batchId + " running with " + started + " of " + laneCount + " lanes");
+                return;
+            }
+        }
+    }
+}
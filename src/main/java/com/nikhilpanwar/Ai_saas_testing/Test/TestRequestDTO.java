@@ -4,6 +4,7 @@ import lombok.Data;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.Map;
 
 @Data
@@ -13,6 +14,8 @@ public class TestRequestDTO {
     private String url;
     private Credentials credentials;
     private Map<String, Object> testRequirements; // Optional
+    private boolean bypassCache; // Optional - force a fresh AI generation
+    private Instant deadline; // Optional - the run is cut short with status "timeout" after this
 
     /**
      * Nested credentials class
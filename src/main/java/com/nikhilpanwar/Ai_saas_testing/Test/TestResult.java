@@ -5,11 +5,18 @@ import lombok.Data;
 import lombok.Builder;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "test_results")
+@Table(name = "test_results", indexes = {
+        @Index(name = "idx_test_results_created_id", columnList = "createdAt, id"), // keyset pagination
+        @Index(name = "idx_test_results_batch", columnList = "batchId"),
+        @Index(name = "idx_test_results_status_created", columnList = "status, createdAt, id") // startup recovery
+})
 @Data
 @Builder
 @AllArgsConstructor
@@ -31,95 +38,74 @@ public class TestResult {
     private String browser; // "chromium", "firefox", "webkit"
 
     @Column(nullable = false, length = 20)
-    private String status; // "passed", "failed", "processing"
+    private String status; // "passed", "failed", "timeout", "cancelled", "processing"
 
-    @ElementCollection
-    @CollectionTable(name = "test_logs", joinColumns = @JoinColumn(name = "test_result_id"))
-    @Column(name = "log", columnDefinition = "TEXT")
+    // Collections are stored as JSONB documents on the row itself: one INSERT per save and
+    // no per-collection lazy loads when reading (see LegacyCollectionMigration for old tables)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
     private List<String> logs;
 
-    @ElementCollection
-    @CollectionTable(name = "test_screenshots", joinColumns = @JoinColumn(name = "test_result_id"))
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
     private List<Screenshot> screenshots;
 
     @Column(columnDefinition = "TEXT")
     private String script; // Generated Playwright script
 
-    @ElementCollection
-    @CollectionTable(name = "test_bugs", joinColumns = @JoinColumn(name = "test_result_id"))
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
     private List<BugItem> bugs;
 
-    @ElementCollection
-    @CollectionTable(name = "test_recommendations", joinColumns = @JoinColumn(name = "test_result_id"))
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
     private List<Recommendation> recommendations;
 
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
 
-    // ==================== EMBEDDED CLASSES ====================
+    private String batchId; // set when submitted through POST /api/test/batch
+
+    // ==================== JSON DOCUMENT CLASSES ====================
 
     /**
-     * Screenshot embedded class
+     * Screenshot entry of the screenshots JSONB column
      */
-    @Embeddable
     @Data
     @Builder
     @AllArgsConstructor
     @NoArgsConstructor
     public static class Screenshot {
-
-        @Column(nullable = false)
         private String url;
-
         private String caption;
     }
 
     /**
-     * Bug embedded class
+     * Bug entry of the bugs JSONB column
      */
-    @Embeddable
     @Data
     @Builder
     @AllArgsConstructor
     @NoArgsConstructor
     public static class BugItem {
-
-        @Column(nullable = false)
         private String bugId; // Using bugId to avoid conflict with table id
-
-        @Column(nullable = false)
         private String title;
-
-        @Column(nullable = false, columnDefinition = "TEXT")
         private String description;
-
-        @Column(nullable = false, length = 20)
         private String severity; // "low", "medium", "high", "critical"
     }
 
     /**
-     * Recommendation embedded class
+     * Recommendation entry of the recommendations JSONB column
      */
-    @Embeddable
     @Data
     @Builder
     @AllArgsConstructor
     @NoArgsConstructor
     public static class Recommendation {
-
-        @Column(nullable = false)
         private String recommendationId; // Using recommendationId to avoid conflict with table id
-
-        @Column(nullable = false)
         private String title;
-
-        @Column(nullable = false, columnDefinition = "TEXT")
         private String description;
-
-        @Column(nullable = false, length = 20)
         private String impact; // "low", "medium", "high"
-
-        @Column(nullable = false)
         private String category; // "performance", "security", "accessibility", "seo", "ux"
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestResultPageDTO {
+
+    private List<TestResultSummary> items;
+    private String nextCursor; // null on the last page
+}
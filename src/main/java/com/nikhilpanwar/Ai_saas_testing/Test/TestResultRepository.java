@@ -1,13 +1,87 @@
 package com.nikhilpanwar.Ai_saas_testing.Test;
 
 import com.nikhilpanwar.Ai_saas_testing.Test.TestResult;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TestResultRepository extends JpaRepository<TestResult, String> {
 
+    String SUMMARY_SELECT = """
+            select t.id as id, t.websiteUrl as websiteUrl, t.status as status, t.duration as duration,
+                   t.browser as browser, coalesce(function('jsonb_array_length', t.bugs), 0) as bugCount,
+                   t.createdAt as createdAt
+            from TestResult t
+            """;
 
+    /**
+     * Newest results first - the first page of the keyset scan
+     */
+    @Query(SUMMARY_SELECT + """
+            where t.createdAt is not null
+            order by t.createdAt desc, t.id desc
+            """)
+    List<TestResultSummary> findSummaries(Pageable pageable);
+
+    /**
+     * Results strictly after the (createdAt, id) cursor. The redundant createdAt <= bound lets
+     * Postgres start the index scan at the cursor instead of filtering from the top.
+     */
+    @Query(SUMMARY_SELECT + """
+            where t.createdAt <= :createdAt
+              and (t.createdAt < :createdAt or t.id < :id)
+            order by t.createdAt desc, t.id desc
+            """)
+    List<TestResultSummary> findSummariesAfter(@Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") String id,
+                                               Pageable pageable);
+
+    /**
+     * Every result of one batch, in submission order
+     */
+    @Query(SUMMARY_SELECT + """
+            where t.batchId = :batchId
+            order by t.createdAt, t.id
+            """)
+    List<TestResultSummary> findSummariesByBatch(@Param("batchId") String batchId);
+
+    /**
+     * Store a script on a result that hasn't finished yet; returns 0 once it has
+     */
+    @Transactional
+    @Modifying
+    @Query("update TestResult t set t.script = :script where t.id = :id and t.status = 'processing'")
+    int assignScriptIfProcessing(@Param("id") String id, @Param("script") String script);
+
+    /**
+     * Cancel a result that hasn't finished yet, in one statement so a run finishing at the same
+     * moment can't be overwritten; returns 0 once it has finished
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE test_results
+            SET status = 'cancelled', completed_at = :completedAt,
+                logs = CAST('["🛑 Cancelled by user"]' AS jsonb),
+                bugs = coalesce(bugs, CAST('[]' AS jsonb)),
+                recommendations = coalesce(recommendations, CAST('[]' AS jsonb)),
+                screenshots = coalesce(screenshots, CAST('[]' AS jsonb))
+            WHERE id = :id AND status = 'processing'
+            """, nativeQuery = true)
+    int cancelIfProcessing(@Param("id") String id, @Param("completedAt") LocalDateTime completedAt);
+
+    /**
+     * Status of a result, locking its row until the surrounding transaction ends
+     */
+    @Query(value = "SELECT status FROM test_results WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<String> lockStatus(@Param("id") String id);
 }
@@ -0,0 +1,16 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of a test result for list views - no script, logs or collections
+ */
+public interface TestResultSummary {
+    String getId();
+    String getWebsiteUrl();
+    String getStatus();
+    String getDuration();
+    String getBrowser();
+    int getBugCount();
+    LocalDateTime getCreatedAt();
+}
@@ -1,98 +1,430 @@
 package com.nikhilpanwar.Ai_saas_testing.Test;
 
+import com.nikhilpanwar.Ai_saas_testing.config.CallDeadline;
+import com.nikhilpanwar.Ai_saas_testing.config.PythonEndpointPool;
+import com.nikhilpanwar.Ai_saas_testing.config.RunCancellation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.nio.file.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
 public class TestService {
 
     private final TestResultRepository testRepository;
-    private final RestTemplate restTemplate;
-
-    private static final String PYTHON_API_URL = "http://localhost:5000/generate-tests";
-    private static final String PYTHON_EXECUTE_URL = "http://localhost:5000/execute-tests";
-
-    // Folder to store screenshots locally (optional)
-    private static final Path SCREENSHOT_DIR = Paths.get("uploads/screenshots");
+    private final RestTemplate generateRestTemplate;
+    private final RestTemplate executeRestTemplate;
+    private final PythonEndpointPool generateEndpoints;
+    private final PythonEndpointPool executeEndpoints;
+    private final ExecutionResponseParser executionResponseParser;
+    private final ScriptCache scriptCache;
+    private final InFlightTestRegistry inFlightTests;
+    private final TestCancellationRegistry cancellations;
+    private final PipelineMetrics pipelineMetrics;
+    private final PipelineAdmission admission;
+    private final ExecuteConcurrencyLimiter executeLimiter;
+    private final HostScheduler hostScheduler;
+    private final GenerateCircuitBreaker generateCircuit;
+    private final GenerateRetryBudget generateRetryBudget;
+    private final TaskExecutor generateStageExecutor;
+    private final TaskExecutor executeStageExecutor;
+    private final TaskExecutor postProcessStageExecutor;
+    private final TaskExecutor persistStageExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    // Time budget of a run that doesn't bring its own deadline, counted from submission (batch runs: from start)
+    @Value("${test.pipeline.default-budget:15m}")
+    private Duration defaultBudget;
+
+    // Script placeholder when the run's deadline passed before a script was generated
+    private static final String DEADLINE_EXCEEDED = "// ⏱️ Deadline exceeded";
+
+    // Script placeholder when the run was cancelled before a script was generated
+    private static final String CANCELLED = "// 🛑 Cancelled";
+
+    // Lets the executor node match a later /cancel-tests call to the running browser
+    private static final String RUN_ID_HEADER = "X-Run-Id";
 
     /**
      * Call Python Flask AI service to generate Playwright script
      */
     public String generateScript(TestRequestDTO requestDTO) {
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("url", requestDTO.getUrl());
-            request.put("test_requirements", requestDTO.getTestRequirements());
-            request.put("credentials", requestDTO.getCredentials());
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+        String cacheKey = scriptCache.keyFor(requestDTO);
+        if (!requestDTO.isBypassCache()) {
+            Optional<String> cached = scriptCache.get(cacheKey);
+            if (cached.isPresent()) {
+                System.out.println("♻️ Using cached script for: " + requestDTO.getUrl());
+                return cached.get();
+            }
+        }
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
+        Map<String, Object> request = new HashMap<>();
+        request.put("url", requestDTO.getUrl());
+        request.put("test_requirements", requestDTO.getTestRequirements());
+        request.put("credentials", requestDTO.getCredentials());
 
-            ResponseEntity<GeneratedScriptDTO> response =
-                    restTemplate.postForEntity(PYTHON_API_URL, entity, GeneratedScriptDTO.class);
+        Instant deadline = requestDTO.getDeadline();
+        generateRetryBudget.recordRequest();
+        for (int attempt = 1; ; attempt++) {
+            if (RunCancellation.isCurrentCancelled()) {
+                return CANCELLED + " before script generation";
+            }
+            if (CallDeadline.isPast(deadline)) {
+                return DEADLINE_EXCEEDED + " before script generation";
+            }
+            // Fail fast while the AI service is known to be down instead of waiting out every timeout
+            if (!generateCircuit.tryAcquirePermission()) {
+                return fallbackScript(requestDTO);
+            }
 
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                GeneratedScriptDTO dto = response.getBody();
-                if (dto.isSuccess() && dto.getTest_script() != null) {
-                    return dto.getTest_script();
+            try {
+                HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, pythonHeaders(deadline));
+                ResponseEntity<GeneratedScriptDTO> response =
+                        CallDeadline.within(deadline, () -> callGenerate(entity, deadline));
+
+                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                    GeneratedScriptDTO dto = response.getBody();
+                    if (dto.isSuccess() && dto.getTest_script() != null) {
+                        generateCircuit.onSuccess();
+                        scriptCache.put(cacheKey, requestDTO.getUrl(), dto.getTest_script());
+                        return dto.getTest_script();
+                    } else {
+                        generateCircuit.onFailure();
+                        return "// ❌ AI generation failed: " + dto.getError();
+                    }
                 } else {
-                    return "// ❌ AI generation failed: " + dto.getError();
+                    generateCircuit.onFailure();
+                    return "// ❌ AI service returned non-2xx response";
                 }
-            } else {
-                return "// ❌ AI service returned non-2xx response";
+
+            } catch (Exception e) {
+                if (RunCancellation.isCurrentCancelled()) {
+                    generateCircuit.onCancelled();
+                    return CANCELLED + " during script generation";
+                }
+                if (CallDeadline.isPast(deadline)) {
+                    // Cut off by our own budget - says nothing about the AI service's health
+                    generateCircuit.onCancelled();
+                    return DEADLINE_EXCEEDED + " during script generation";
+                }
+                generateCircuit.onFailure();
+                if (isTransient(e) && generateRetryBudget.canRetry(attempt) && generateRetryBudget.backoff(attempt)) {
+                    System.out.println("🔁 Retrying script generation (attempt " + (attempt + 1) + "): " + e.getMessage());
+                    continue;
+                }
+                e.printStackTrace();
+                return "// ⚠️ Error calling AI service: " + e.getMessage();
             }
+        }
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "// ⚠️ Error calling AI service: " + e.getMessage();
+    private ResponseEntity<GeneratedScriptDTO> callGenerate(HttpEntity<Map<String, Object>> entity, Instant deadline) {
+        PythonEndpointPool.Lease node = generateEndpoints.acquire();
+        try {
+            ResponseEntity<GeneratedScriptDTO> response =
+                    generateRestTemplate.postForEntity(node.url(), entity, GeneratedScriptDTO.class);
+            node.release(null);
+            return response;
+        } catch (RuntimeException e) {
+            node.release(abortedByUs(deadline) ? null : e);
+            throw e;
+        }
+    }
+
+    /**
+     * The run's budget ran out or its user cancelled it - the call's failure isn't the node's fault
+     */
+    private static boolean abortedByUs(Instant deadline) {
+        return CallDeadline.isPast(deadline) || RunCancellation.isCurrentCancelled();
+    }
+
+    /**
+     * JSON headers plus the time left for the Python service to finish its part of the run
+     */
+    private static HttpHeaders pythonHeaders(Instant deadline) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String secondsLeft = CallDeadline.secondsLeft(deadline);
+        if (secondsLeft != null) {
+            headers.set(CallDeadline.TIMEOUT_HEADER, secondsLeft);
+        }
+        return headers;
+    }
+
+    /**
+     * While the circuit is open: the newest cached script for the same url, or a fast failure
+     */
+    private String fallbackScript(TestRequestDTO requestDTO) {
+        Optional<String> fallback = scriptCache.latestForUrl(requestDTO.getUrl());
+        if (fallback.isPresent()) {
+            System.out.println("🛟 AI service circuit open, using last cached script for: " + requestDTO.getUrl());
+            pipelineMetrics.recordGenerationFallback(true);
+            return fallback.get();
+        }
+        pipelineMetrics.recordGenerationFallback(false);
+        return "// ⚠️ AI service unavailable (circuit open), no cached script for this url";
+    }
+
+    /**
+     * Connection problems, timeouts and 5xx may succeed on another try; 4xx will not
+     */
+    private static boolean isTransient(Exception e) {
+        return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+    }
+
+    /**
+     * Give a request without a deadline the default budget, starting now
+     */
+    public TestRequestDTO withDefaultDeadline(TestRequestDTO requestDTO) {
+        if (requestDTO.getDeadline() == null) {
+            requestDTO.setDeadline(Instant.now().plus(defaultBudget));
         }
+        return requestDTO;
     }
 
     /**
      * Generate script and execute it (FULL PIPELINE)
      */
     public TestResultDTO generateAndExecuteTest(TestRequestDTO requestDTO) {
-        System.out.println("🚀 Starting test generation and execution for: " + requestDTO.getUrl());
+        withDefaultDeadline(requestDTO);
+        // Identical concurrent requests share one generate + execute; only the leader takes a slot
+        return inFlightTests.execute(requestKey(requestDTO), null, () -> admission.admitSync(() -> {
+            try (HostScheduler.Permit permit = hostScheduler.acquire(requestDTO.getUrl())) {
+                TestResult result = TestResult.builder()
+                        .websiteUrl(requestDTO.getUrl())
+                        .createdAt(LocalDateTime.now())
+                        .build();
+                return runPipeline(result, requestDTO);
+            }
+        }));
+    }
 
-        // 1️⃣ Generate the script
-        String script = generateScript(requestDTO);
-        if (script.startsWith("//")) {
-            System.out.println("❌ Script generation failed");
-            TestResult failed = TestResult.builder()
+    /**
+     * Identity of a request for de-duplication (see InFlightTestRegistry#keyFor)
+     */
+    public String requestKey(TestRequestDTO requestDTO) {
+        return InFlightTestRegistry.keyFor(scriptCache.keyFor(requestDTO), requestDTO);
+    }
+
+    /**
+     * Persist a "processing" result so the caller can return its id before the pipeline runs
+     */
+    public TestResultDTO createPendingTest(TestRequestDTO requestDTO) {
+        TestResult pending = TestResult.builder()
+                .websiteUrl(requestDTO.getUrl())
+                .status("processing")
+                .executionTime(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build();
+        testRepository.save(pending);
+        return convertToDTO(pending);
+    }
+
+    /**
+     * Pending results for every request of a batch, saved in one round trip, in request order
+     */
+    public List<String> createPendingTests(String batchId, List<TestRequestDTO> requests) {
+        List<TestResult> pending = new ArrayList<>(requests.size());
+        LocalDateTime submittedAt = LocalDateTime.now();
+        for (int i = 0; i < requests.size(); i++) {
+            TestRequestDTO requestDTO = requests.get(i);
+            // One microsecond apart so (createdAt, id) ordering keeps the request order
+            LocalDateTime createdAt = submittedAt.plusNanos(i * 1000L);
+            pending.add(TestResult.builder()
                     .websiteUrl(requestDTO.getUrl())
-                    .status("failed")
-                    .executionTime(LocalDateTime.now())
-                    .createdAt(LocalDateTime.now())
-                    .script(script)
-                    .logs(List.of("Script generation failed"))
-                    .build();
-            testRepository.save(failed);
-            return convertToDTO(failed);
+                    .status("processing")
+                    .executionTime(createdAt)
+                    .createdAt(createdAt)
+                    .batchId(batchId)
+                    .build());
+        }
+        return testRepository.saveAll(pending).stream().map(TestResult::getId).toList();
+    }
+
+    /**
+     * Store an already generated script on a pending result; its pipeline will skip generation
+     */
+    public void assignScript(String testId, String script) {
+        testRepository.assignScriptIfProcessing(testId, script); // no-op once the run has finished
+    }
+
+    /**
+     * Run the full pipeline for a result previously created by {@link #createPendingTest}
+     */
+    public TestResultDTO completePendingTest(String testId, TestRequestDTO requestDTO) {
+        TestResult pending = testRepository.findById(testId)
+                .orElseThrow(() -> new RuntimeException("Test not found"));
+        if ("cancelled".equals(pending.getStatus())) {
+            return convertToDTO(pending); // cancelled while it was still queued
+        }
+        return runPipeline(pending, requestDTO);
+    }
+
+    /**
+     * Mark a result that is still in progress as cancelled; its pipeline, if running, is aborted
+     * by the caller
+     */
+    public TestResultDTO cancelPendingTest(String testId) {
+        boolean cancelled = testRepository.cancelIfProcessing(testId, LocalDateTime.now()) > 0;
+        TestResult result = testRepository.findById(testId)
+                .orElseThrow(() -> new RuntimeException("Test not found"));
+        if (!cancelled) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Test is already " + result.getStatus());
+        }
+        return convertToDTO(result);
+    }
+
+    private static void markCancelled(TestResult result) {
+        result.setStatus("cancelled");
+        result.setCompletedAt(LocalDateTime.now());
+        result.setLogs(new ArrayList<>(List.of("🛑 Cancelled by user")));
+        if (result.getBugs() == null) result.setBugs(new ArrayList<>());
+        if (result.getRecommendations() == null) result.setRecommendations(new ArrayList<>());
+        if (result.getScreenshots() == null) result.setScreenshots(new ArrayList<>());
+    }
+
+    /**
+     * Fill a pending result with the outcome of the identical run it was coalesced into
+     */
+    public TestResultDTO linkPendingTest(String testId, String sourceTestId) {
+        TestResult pending = testRepository.findById(testId)
+                .orElseThrow(() -> new RuntimeException("Test not found"));
+        TestResult source = testRepository.findById(sourceTestId)
+                .orElseThrow(() -> new RuntimeException("Test not found"));
+        if ("cancelled".equals(pending.getStatus())) {
+            return convertToDTO(pending);
         }
 
-        // 2️⃣ Execute the script
         List<String> logs = new ArrayList<>();
-        List<TestResult.BugItem> bugs = new ArrayList<>();
-        List<TestResult.Recommendation> recommendations = new ArrayList<>();
-        List<TestResult.Screenshot> screenshots = new ArrayList<>();
+        logs.add("🔗 Result shared with identical run " + sourceTestId);
+        if (source.getLogs() != null) logs.addAll(source.getLogs());
+
+        pending.setStatus(source.getStatus());
+        pending.setExecutionTime(source.getExecutionTime());
+        pending.setCompletedAt(source.getCompletedAt());
+        pending.setDuration(source.getDuration());
+        pending.setBrowser(source.getBrowser());
+        pending.setScript(source.getScript());
+        pending.setLogs(logs);
+        pending.setScreenshots(source.getScreenshots() != null ? new ArrayList<>(source.getScreenshots()) : null);
+        pending.setBugs(source.getBugs() != null ? new ArrayList<>(source.getBugs()) : null);
+        pending.setRecommendations(source.getRecommendations() != null ? new ArrayList<>(source.getRecommendations()) : null);
+        testRepository.save(pending);
+        return convertToDTO(pending);
+    }
 
-        String status = "failed";
-        String duration = "0s";
-        String browser = "chromium";
+    /**
+     * Mark a pending result as failed when its pipeline could not run to completion
+     */
+    public void failPendingTest(String testId, String reason) {
+        testRepository.findById(testId).filter(test -> !"cancelled".equals(test.getStatus())).ifPresent(test -> {
+            test.setStatus("failed");
+            test.setCompletedAt(LocalDateTime.now());
+            test.setLogs(new ArrayList<>(List.of("❌ " + reason)));
+            testRepository.save(test);
+        });
+    }
+
+    /**
+     * Fail a result unless it has finished already; the row lock keeps it from overwriting the
+     * outcome of a run that is being saved at the same moment (see saveIfProcessing)
+     */
+    public void failIfProcessing(String testId, String reason) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!"processing".equals(testRepository.lockStatus(testId).orElse(null))) return;
+            testRepository.findById(testId).ifPresent(test -> {
+                test.setStatus("failed");
+                test.setCompletedAt(LocalDateTime.now());
+                test.setLogs(new ArrayList<>(List.of("❌ " + reason)));
+                testRepository.save(test);
+            });
+        });
+    }
+
+    /**
+     * Run the stages generate -> execute -> post-process -> persist, each on its own executor, and
+     * wait for the result. The caller only waits; stage threads are what bound the work.
+     *
+     * Runs of a persisted result can be cancelled by id while in progress (see TestJobService#cancel).
+     */
+    private TestResultDTO runPipeline(TestResult result, TestRequestDTO requestDTO) {
+        System.out.println("🚀 Starting test generation and execution for: " + requestDTO.getUrl());
+
+        String testId = result.getId();
+        RunCancellation run = testId != null ? cancellations.register(testId) : new RunCancellation();
+
+        // A script stored on the pending result (shared batch template) skips generation
+        String presetScript = result.getScript();
+        CompletableFuture<String> generated = presetScript != null && !presetScript.startsWith("//")
+                ? CompletableFuture.completedFuture(presetScript)
+                : CompletableFuture.supplyAsync(() -> run.within(
+                        () -> pipelineMetrics.time(PipelineMetrics.GENERATE, () -> generateScript(requestDTO))),
+                        generateStageExecutor);
+
+        CompletableFuture<TestResultDTO> pipeline = generated
+                .thenApplyAsync(script -> executeStage(script, requestDTO, testId, run), executeStageExecutor)
+                .thenApplyAsync(executed -> postProcessStage(result, executed, requestDTO.getDeadline()),
+                        postProcessStageExecutor)
+                .thenApplyAsync(processed -> persistStage(processed, run), persistStageExecutor);
+        try {
+            return pipeline.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        } finally {
+            if (testId != null) cancellations.unregister(testId, run);
+        }
+    }
+
+    /**
+     * Output of the execute stage; execution is null when generation failed or the call threw
+     */
+    private record Executed(String script, ExecutionResponse execution, Exception error) {
+        boolean generationFailed() {
+            return script.startsWith("//");
+        }
+    }
+
+    // 2️⃣ Execute the script
+    private Executed executeStage(String script, TestRequestDTO requestDTO, String testId, RunCancellation run) {
+        if (script.startsWith("//")) {
+            System.out.println("❌ Script generation failed");
+            return new Executed(script, null, null);
+        }
+        if (run.isCancelled()) {
+            return new Executed(script, null, new RunCancelledException("Cancelled before execution"));
+        }
+
+        Instant deadline = requestDTO.getDeadline();
+        if (CallDeadline.isPast(deadline)) {
+            return new Executed(script, null, new DeadlineExceededException("Deadline passed before execution"));
+        }
 
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpHeaders headers = pythonHeaders(deadline);
+            if (testId != null) {
+                headers.set(RUN_ID_HEADER, testId);
+            }
 
             // 🆕 Include URL for better AI context in recommendations
             Map<String, Object> execRequest = new HashMap<>();
@@ -102,151 +434,272 @@ public class TestService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(execRequest, headers);
 
             System.out.println("📤 Calling Flask /execute-tests...");
-            ResponseEntity<Map> response =
-                    restTemplate.postForEntity(PYTHON_EXECUTE_URL, entity, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> execution = response.getBody();
-                Boolean success = (Boolean) execution.get("success");
-
-                // 🆕 Use Flask-provided status if available
-                status = (String) execution.getOrDefault("status",
-                        (success != null && success) ? "passed" : "failed");
-
-                logs = extractStringList(execution, "logs");
-                duration = (String) execution.getOrDefault("duration", "0s");
-                browser = (String) execution.getOrDefault("browser", "chromium");
-
-                // ✅ Extract structured bugs
-                List<Map<String, Object>> bugList = (List<Map<String, Object>>) execution.get("bugs");
-                if (bugList != null) {
-                    for (Map<String, Object> b : bugList) {
-                        bugs.add(TestResult.BugItem.builder()
-                                .bugId((String) b.getOrDefault("bugId", UUID.randomUUID().toString()))
-                                .title((String) b.getOrDefault("title", "Unknown Bug"))
-                                .description((String) b.getOrDefault("description", ""))
-                                .severity((String) b.getOrDefault("severity", "medium"))
-                                .build());
-                    }
-                }
+            // Stream the response: screenshots go straight to disk instead of into a Map of Strings.
+            // The adaptive limiter keeps parallel calls within what the Python host can run.
+            ExecutionResponse execution = executeLimiter.execute(deadline, run, () -> run.within(
+                    () -> CallDeadline.within(deadline,
+                            () -> pipelineMetrics.time(PipelineMetrics.EXECUTE, () -> callExecute(entity, deadline, testId)))));
+            return new Executed(script, execution, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new Executed(script, null, e);
+        }
+    }
 
-                // ✅ Extract AI recommendations (FIXED: Use AI-generated IDs)
-                List<Map<String, Object>> recList = (List<Map<String, Object>>) execution.get("recommendations");
-                if (recList != null && !recList.isEmpty()) {
-                    System.out.println("📋 Processing " + recList.size() + " AI recommendations");
-                    for (Map<String, Object> r : recList) {
-                        // 🔥 FIX: Use the recommendationId from AI, not generating new UUID
-                        String recId = (String) r.get("recommendationId");
-                        String title = (String) r.get("title");
-                        String description = (String) r.get("description");
-                        String impact = (String) r.get("impact");
-                        String category = (String) r.get("category");
-
-                        // Validate required fields
-                        if (recId == null || recId.isEmpty()) {
-                            recId = "rec_" + UUID.randomUUID().toString().substring(0, 12);
-                        }
-                        if (title == null || title.isEmpty()) {
-                            title = "AI Recommendation";
-                        }
-                        if (description == null || description.isEmpty()) {
-                            description = "No description provided";
-                        }
-                        if (impact == null || !isValidImpact(impact)) {
-                            impact = "medium";
-                        }
-                        if (category == null || !isValidCategory(category)) {
-                            category = "ux";
-                        }
-
-                        recommendations.add(TestResult.Recommendation.builder()
-                                .recommendationId(recId)
-                                .title(title)
-                                .description(description)
-                                .impact(impact.toLowerCase())
-                                .category(category.toLowerCase())
-                                .build());
-
-                        System.out.println("  ✓ " + title + " [" + impact + "/" + category + "]");
-                    }
-                } else {
-                    System.out.println("⚠️ No recommendations received from AI");
-                }
+    /**
+     * Output of the post-process stage: the filled-in entity plus what the outcome metrics need
+     */
+    private record Processed(TestResult result, boolean generationFailed, long screenshotBytes) {
+    }
 
-                // 🆕 Extract screenshots (Base64)
-                List<Map<String, Object>> shots = (List<Map<String, Object>>) execution.get("screenshots");
-                if (shots != null && !shots.isEmpty()) {
-                    Files.createDirectories(SCREENSHOT_DIR);
-                    System.out.println("📸 Processing " + shots.size() + " screenshots");
-                    for (Map<String, Object> shot : shots) {
-                        String filename = (String) shot.getOrDefault("filename", UUID.randomUUID() + ".png");
-                        String b64 = (String) shot.get("b64");
-                        if (b64 != null) {
-                            try {
-                                byte[] bytes = Base64.getDecoder().decode(b64);
-                                Path filePath = SCREENSHOT_DIR.resolve(filename);
-                                Files.write(filePath, bytes);
-                                String fileUrl = "/uploads/screenshots/" + filename; // frontend route
-                                screenshots.add(TestResult.Screenshot.builder()
-                                        .url(fileUrl)
-                                        .caption(filename)
-                                        .build());
-                                System.out.println("  ✓ Saved: " + filename);
-                            } catch (Exception e) {
-                                logs.add("⚠️ Failed to save screenshot: " + filename);
-                                System.err.println("Screenshot save error: " + e.getMessage());
-                            }
-                        }
-                    }
-                }
+    // 3️⃣ Map the Flask response onto the result
+    private Processed postProcessStage(TestResult result, Executed executed, Instant deadline) {
+        result.setScript(executed.script());
+        result.setExecutionTime(LocalDateTime.now());
+
+        if (executed.execution() == null && CallDeadline.isPast(deadline)) {
+            // ⏱️ Cut short by the run's deadline - generation, queueing or the execute call overran
+            List<String> logs = new ArrayList<>(List.of("⏱️ Run exceeded its deadline (" + deadline + ")"));
+            if (executed.error() != null) logs.add("❌ " + executed.error().getMessage());
+            result.setStatus("timeout");
+            result.setCompletedAt(LocalDateTime.now());
+            result.setLogs(logs);
+            result.setBugs(new ArrayList<>());
+            result.setRecommendations(new ArrayList<>());
+            result.setScreenshots(new ArrayList<>());
+            return new Processed(result, false, 0);
+        }
 
-                if ("failed".equals(status) && bugs.isEmpty()) {
-                    bugs.add(TestResult.BugItem.builder()
-                            .bugId(UUID.randomUUID().toString())
-                            .title("General Failure")
-                            .description((String) execution.getOrDefault("error", "Unknown Error"))
-                            .severity("high")
-                            .build());
-                }
+        if (executed.generationFailed()) {
+            result.setStatus("failed");
+            result.setLogs(new ArrayList<>(List.of("Script generation failed")));
+            return new Processed(result, true, 0);
+        }
+
+        List<String> logs = new ArrayList<>();
+        List<TestResult.BugItem> bugs = new ArrayList<>();
+        List<TestResult.Recommendation> recommendations = new ArrayList<>();
+        List<TestResult.Screenshot> screenshots = new ArrayList<>();
 
+        String status = "failed";
+        String duration = "0s";
+        String browser = "chromium";
+        long screenshotBytes = 0;
+
+        ExecutionResponse execution = executed.execution();
+        if (executed.error() != null) {
+            logs.add("❌ Exception: " + executed.error().getMessage());
+        } else if (execution != null) {
+            pipelineMetrics.recordStage(PipelineMetrics.SCREENSHOTS, execution.getScreenshotNanos());
+            screenshotBytes = execution.getScreenshotBytes();
+            Boolean success = execution.getSuccess();
+
+            // 🆕 Use Flask-provided status if available
+            status = execution.getStatus() != null ? execution.getStatus()
+                    : (success != null && success) ? "passed" : "failed";
+
+            logs = execution.getLogs();
+            duration = execution.getDuration() != null ? execution.getDuration() : "0s";
+            browser = execution.getBrowser() != null ? execution.getBrowser() : "chromium";
+
+            // ✅ Extract structured bugs
+            for (ExecutionResponse.Bug b : execution.getBugs()) {
+                bugs.add(TestResult.BugItem.builder()
+                        .bugId(b.getBugId() != null ? b.getBugId() : UUID.randomUUID().toString())
+                        .title(b.getTitle() != null ? b.getTitle() : "Unknown Bug")
+                        .description(b.getDescription() != null ? b.getDescription() : "")
+                        .severity(b.getSeverity() != null ? b.getSeverity() : "medium")
+                        .build());
+            }
+
+            // ✅ Extract AI recommendations (FIXED: Use AI-generated IDs)
+            List<ExecutionResponse.Recommendation> recList = execution.getRecommendations();
+            if (!recList.isEmpty()) {
+                System.out.println("📋 Processing " + recList.size() + " AI recommendations");
+                for (ExecutionResponse.Recommendation r : recList) {
+                    TestResult.Recommendation rec = normalizeRecommendation(r);
+                    recommendations.add(rec);
+                    System.out.println("  ✓ " + rec.getTitle() + " [" + rec.getImpact() + "/" + rec.getCategory() + "]");
+                }
             } else {
-                logs.add("❌ Flask returned non-2xx: " + response.getStatusCode());
+                System.out.println("⚠️ No recommendations received from AI");
             }
-        } catch (Exception e) {
-            logs.add("❌ Exception: " + e.getMessage());
-            e.printStackTrace();
+
+            // 🆕 Screenshots were decoded to SCREENSHOT_DIR while parsing
+            if (!execution.getScreenshots().isEmpty()) {
+                System.out.println("📸 Saved " + execution.getScreenshots().size() + " screenshots");
+            }
+            screenshots.addAll(execution.getScreenshots());
+            logs.addAll(execution.getScreenshotErrors());
+
+            if ("failed".equals(status) && bugs.isEmpty()) {
+                bugs.add(TestResult.BugItem.builder()
+                        .bugId(UUID.randomUUID().toString())
+                        .title("General Failure")
+                        .description(execution.getError() != null ? execution.getError() : "Unknown Error")
+                        .severity("high")
+                        .build());
+            }
+        } else {
+            logs.add("❌ Flask returned an empty response");
         }
 
-        // 3️⃣ Save result in DB
-        TestResult result = TestResult.builder()
-                .websiteUrl(requestDTO.getUrl())
-                .status(status)
-                .executionTime(LocalDateTime.now())
-                .createdAt(LocalDateTime.now())
-                .completedAt(LocalDateTime.now())
-                .script(script)
-                .duration(duration)
-                .browser(browser)
-                .logs(logs)
-                .bugs(bugs)
-                .recommendations(recommendations)
-                .screenshots(screenshots)
-                .build();
+        result.setStatus(status);
+        result.setCompletedAt(LocalDateTime.now());
+        result.setDuration(duration);
+        result.setBrowser(browser);
+        result.setLogs(logs);
+        result.setBugs(bugs);
+        result.setRecommendations(recommendations);
+        result.setScreenshots(screenshots);
+        return new Processed(result, false, screenshotBytes);
+    }
 
-        testRepository.save(result);
-        System.out.println("💾 Test saved with ID: " + result.getId());
-        System.out.println("   - Status: " + status);
-        System.out.println("   - Bugs: " + bugs.size());
-        System.out.println("   - Recommendations: " + recommendations.size());
-        System.out.println("   - Screenshots: " + screenshots.size());
+    // 4️⃣ Save result in DB
+    private TestResultDTO persistStage(Processed processed, RunCancellation run) {
+        TestResult result = processed.result();
+        if (run.isHandedOff()) {
+            // Stopped by shutdown: back on the queue for another node, or failed by PipelineDrain in memory mode
+            System.out.println("↩️ Not saving test " + result.getId() + ", it was stopped by shutdown");
+            return convertToDTO(result);
+        }
+        // A run cancelled at any point is stored as cancelled, matching what the cancel call returned
+        boolean cancelled = run.isCancelled();
+        if (cancelled) {
+            markCancelled(result);
+        }
+        boolean generationFailed = processed.generationFailed() && !cancelled;
+        if (generationFailed) {
+            pipelineMetrics.recordGenerationFailure();
+        }
 
-        return convertToDTO(result);
+        boolean saved = pipelineMetrics.time(PipelineMetrics.PERSIST, () -> saveIfProcessing(result));
+        if (!saved) {
+            // Already stored as cancelled, possibly by a cancel on another node this run never saw
+            if (!cancelled) System.out.println("🛑 Not saving test " + result.getId() + ", it was cancelled meanwhile");
+            return convertToDTO(testRepository.findById(result.getId()).orElse(result));
+        }
+
+        if (!generationFailed) {
+            int bugs = result.getBugs().size();
+            int recommendations = result.getRecommendations().size();
+            pipelineMetrics.recordOutcome(result.getStatus(), bugs, recommendations, processed.screenshotBytes());
+            System.out.println("💾 Test saved with ID: " + result.getId());
+            System.out.println("   - Status: " + result.getStatus());
+            System.out.println("   - Bugs: " + bugs);
+            System.out.println("   - Recommendations: " + recommendations);
+            System.out.println("   - Screenshots: " + result.getScreenshots().size());
+        }
+
+        return pipelineMetrics.time(PipelineMetrics.CONVERT, () -> convertToDTO(result));
+    }
+
+    /**
+     * Save a run's outcome unless its stored result has already finished (cancelled by a concurrent
+     * call). The row stays locked from the check until the save commits, so a cancel either lands
+     * before it and wins, or finds the result finished and gets a 409.
+     */
+    private boolean saveIfProcessing(TestResult result) {
+        if (result.getId() == null) {
+            testRepository.save(result); // synchronous run, nothing stored yet
+            return true;
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            String stored = testRepository.lockStatus(result.getId()).orElse(null);
+            if (stored != null && !"processing".equals(stored)) {
+                return false;
+            }
+            testRepository.save(result);
+            return true;
+        }));
+    }
+
+    /**
+     * POST the script to the least busy executor node, streaming the response through the parser
+     */
+    private ExecutionResponse callExecute(HttpEntity<Map<String, Object>> entity, Instant deadline, String testId) {
+        PythonEndpointPool.Lease node = executeEndpoints.acquire();
+        AtomicBoolean done = new AtomicBoolean();
+        if (testId != null) {
+            // Aborting our request doesn't stop the browser on the node, so ask it to
+            RunCancellation.onCurrentCancel(() -> {
+                if (!done.get()) abortExecution(node.url(), testId);
+            });
+        }
+        try {
+            ExecutionResponse execution = executeRestTemplate.execute(
+                    node.url(),
+                    HttpMethod.POST,
+                    executeRestTemplate.httpEntityCallback(entity),
+                    response -> executionResponseParser.parse(response.getBody()));
+            node.release(null);
+            return execution;
+        } catch (RuntimeException e) {
+            node.release(abortedByUs(deadline) ? null : e);
+            if (RunCancellation.isCurrentCancelled()) {
+                throw new RunCancelledException("Cancelled during execution");
+            }
+            throw e;
+        } finally {
+            done.set(true);
+        }
+    }
+
+    /**
+     * Tell an executor node to kill the browser of a cancelled run; best effort
+     */
+    private void abortExecution(String nodeUrl, String testId) {
+        String cancelUrl = URI.create(nodeUrl).resolve("/cancel-tests").toString();
+        try {
+            CallDeadline.within(Instant.now().plusSeconds(5), () ->
+                    executeRestTemplate.postForEntity(cancelUrl, Map.of("run_id", testId), Map.class));
+            System.out.println("🛑 Stopped test " + testId + " on " + cancelUrl);
+        } catch (RuntimeException e) {
+            System.err.println("Could not stop test " + testId + " on " + cancelUrl + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fill in missing fields of an AI recommendation and clamp impact/category to known values
+     */
+    static TestResult.Recommendation normalizeRecommendation(ExecutionResponse.Recommendation r) {
+        // 🔥 FIX: Use the recommendationId from AI, not generating new UUID
+        String recId = r.getRecommendationId();
+        String title = r.getTitle();
+        String description = r.getDescription();
+        String impact = r.getImpact();
+        String category = r.getCategory();
+
+        // Validate required fields
+        if (recId == null || recId.isEmpty()) {
+            recId = "rec_" + UUID.randomUUID().toString().substring(0, 12);
+        }
+        if (title == null || title.isEmpty()) {
+            title = "AI Recommendation";
+        }
+        if (description == null || description.isEmpty()) {
+            description = "No description provided";
+        }
+        if (impact == null || !isValidImpact(impact)) {
+            impact = "medium";
+        }
+        if (category == null || !isValidCategory(category)) {
+            category = "ux";
+        }
+
+        return TestResult.Recommendation.builder()
+                .recommendationId(recId)
+                .title(title)
+                .description(description)
+                .impact(impact.toLowerCase())
+                .category(category.toLowerCase())
+                .build();
     }
 
     /**
      * Validates if impact is one of: low, medium, high
      */
-    private boolean isValidImpact(String impact) {
+    private static boolean isValidImpact(String impact) {
         if (impact == null) return false;
         String lower = impact.toLowerCase();
         return lower.equals("low") || lower.equals("medium") || lower.equals("high");
@@ -255,27 +708,14 @@ public class TestService {
     /**
      * Validates if category is one of: performance, security, accessibility, seo, ux
      */
-    private boolean isValidCategory(String category) {
+    private static boolean isValidCategory(String category) {
         if (category == null) return false;
         String lower = category.toLowerCase();
         return lower.equals("performance") || lower.equals("security") ||
                 lower.equals("accessibility") || lower.equals("seo") || lower.equals("ux");
     }
 
-    private List<String> extractStringList(Map<String, Object> map, String key) {
-        try {
-            Object val = map.get(key);
-            if (val instanceof List<?>) {
-                List<?> list = (List<?>) val;
-                List<String> result = new ArrayList<>();
-                for (Object o : list) result.add(String.valueOf(o));
-                return result;
-            }
-        } catch (Exception ignored) {}
-        return new ArrayList<>();
-    }
-
-    private TestResultDTO convertToDTO(TestResult test) {
+    static TestResultDTO convertToDTO(TestResult test) {
         return TestResultDTO.builder()
                 .id(test.getId())
                 .websiteUrl(test.getWebsiteUrl())
@@ -310,12 +750,55 @@ public class TestService {
 
     public TestResultDTO getTestResult(String id) {
         return testRepository.findById(id)
-                .map(this::convertToDTO)
+                .map(TestService::convertToDTO)
                 .orElseThrow(() -> new RuntimeException("Test not found"));
     }
 
+    /**
+     * One page of result summaries, newest first. Pass the previous page's nextCursor to continue.
+     */
+    public TestResultPageDTO getTestResultPage(String cursor, int limit) {
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<TestResultSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = testRepository.findSummaries(pageable);
+        } else {
+            String[] position = decodeCursor(cursor);
+            rows = testRepository.findSummariesAfter(LocalDateTime.parse(position[0]), position[1], pageable);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            TestResultSummary last = rows.get(limit - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        return TestResultPageDTO.builder()
+                .items(rows)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private String encodeCursor(LocalDateTime createdAt, String id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = raw.split("\\|", 2);
+            if (position.length != 2) throw new IllegalArgumentException("Malformed cursor");
+            LocalDateTime.parse(position[0]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
     public List<TestResultDTO> getAllTestResults() {
-        return testRepository.findAll().stream().map(this::convertToDTO).toList();
+        return testRepository.findAll().stream().map(TestService::convertToDTO).toList();
     }
 
     public boolean deleteTestResult(String testId) {
@@ -0,0 +1,139 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Dedicated pool for background test pipelines so they never run on Tomcat request threads.
+     * With spring.threads.virtual.enabled=true each pipeline gets its own virtual thread instead:
+     * the pipeline is almost entirely blocked on HTTP calls to the Python service, so a parked
+     * virtual thread costs a few KB of heap rather than a whole platform thread.
+     *
+     * Each node claims up to {@code test.jobs.workers} jobs at once, so the pool always keeps at
+     * least that many core threads; otherwise claimed jobs would sit in the queue on a lease.
+     */
+    @Bean(name = "testPipelineExecutor")
+    public TaskExecutor testPipelineExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${test.jobs.workers:8}") int workers,
+            @Value("${test.pipeline.core-pool-size:${test.jobs.workers:8}}") int corePoolSize,
+            @Value("${test.pipeline.max-pool-size:8}") int maxPoolSize,
+            @Value("${test.pipeline.queue-capacity:100}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("test-pipeline-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        int coreThreads = Math.max(corePoolSize, workers);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreThreads);
+        executor.setMaxPoolSize(Math.max(maxPoolSize, coreThreads));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("test-pipeline-");
+        executor.initialize();
+        return executor;
+    }
+
+    /*
+     * Stage executors for the pipeline generate -> execute -> post-process -> persist.
+     * Each stage is sized for the resource it waits on (AI service, browsers, CPU, database), so
+     * generation for one run overlaps with browser execution for another. When a stage's queue is
+     * full the previous stage's thread waits for room, which slows intake instead of dropping work
+     * and never runs a task on the wrong stage. With spring.threads.virtual.enabled=true the stage
+     * threads are virtual; the thread counts still bound each stage.
+     */
+
+    @Bean
+    public ThreadPoolTaskExecutor generateStageExecutor(
+            MeterRegistry registry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${test.pipeline.stages.generate.threads:4}") int threads,
+            @Value("${test.pipeline.stages.generate.queue-capacity:50}") int queueCapacity) {
+        return stageExecutor("generate", threads, queueCapacity, virtualThreads, registry);
+    }
+
+    /**
+     * As many threads as the adaptive limiter may ever allow, so the limiter alone decides how
+     * many /execute-tests calls run in parallel
+     */
+    @Bean
+    public ThreadPoolTaskExecutor executeStageExecutor(
+            MeterRegistry registry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${test.pipeline.stages.execute.threads:${test.execute-limiter.max-limit:32}}") int threads,
+            @Value("${test.pipeline.stages.execute.queue-capacity:50}") int queueCapacity) {
+        return stageExecutor("execute", threads, queueCapacity, virtualThreads, registry);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor postProcessStageExecutor(
+            MeterRegistry registry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${test.pipeline.stages.post-process.threads:2}") int threads,
+            @Value("${test.pipeline.stages.post-process.queue-capacity:50}") int queueCapacity) {
+        return stageExecutor("post-process", threads, queueCapacity, virtualThreads, registry);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor persistStageExecutor(
+            MeterRegistry registry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${test.pipeline.stages.persist.threads:2}") int threads,
+            @Value("${test.pipeline.stages.persist.queue-capacity:50}") int queueCapacity) {
+        return stageExecutor("persist", threads, queueCapacity, virtualThreads, registry);
+    }
+
+    private ThreadPoolTaskExecutor stageExecutor(String stage, int threads, int queueCapacity, boolean virtualThreads,
+                                                 MeterRegistry registry) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stage-" + stage + "-");
+        executor.setVirtualThreads(virtualThreads);
+        executor.setRejectedExecutionHandler(AsyncConfig::waitForRoom);
+        executor.initialize();
+
+        Gauge.builder("test.pipeline.stage.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("stage", stage)
+                .register(registry);
+        Gauge.builder("test.pipeline.stage.queued", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .tag("stage", stage)
+                .register(registry);
+        Gauge.builder("test.pipeline.stage.utilization", executor, e -> (double) e.getActiveCount() / e.getMaxPoolSize())
+                .description("Busy share of a stage's threads, 1.0 = saturated")
+                .tag("stage", stage)
+                .register(registry);
+        return executor;
+    }
+
+    /**
+     * Bounded blocking hand-off: wait until the stage's queue has room
+     */
+    private static void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+        try {
+            while (!executor.getQueue().offer(task, 1, TimeUnit.SECONDS)) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Stage executor is shut down");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for a stage slot", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end deadline of the run the current thread is calling out for.
+ *
+ * {@link DeadlineHttpRequestFactory} cuts each outbound call off at whichever comes first, the
+ * endpoint's own deadline or the run's, and callers pass the time left to the Python service in
+ * {@link #TIMEOUT_HEADER} so it can stop its own work in time.
+ */
+public final class CallDeadline {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout"; // whole seconds left
+
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+
+    private CallDeadline() {
+    }
+
+    /**
+     * Run {@code call} with outbound requests bounded by {@code deadline} (no bound if null)
+     */
+    public static <T> T within(Instant deadline, Supplier<T> call) {
+        Instant previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * {@code limit}, shortened to the time left before the current deadline (never negative)
+     */
+    static Duration cap(Duration limit) {
+        Instant deadline = CURRENT.get();
+        if (deadline == null) return limit;
+        Duration left = Duration.between(Instant.now(), deadline);
+        if (left.isNegative()) return Duration.ZERO;
+        return left.compareTo(limit) < 0 ? left : limit;
+    }
+
+    public static boolean isPast(Instant deadline) {
+        return deadline != null && !Instant.now().isBefore(deadline);
+    }
+
+    /**
+     * Header value for the time left, rounded up; null when there is no deadline
+     */
+    public static String secondsLeft(Instant deadline) {
+        if (deadline == null) return null;
+        long millis = Duration.between(Instant.now(), deadline).toMillis();
+        return String.valueOf(Math.max(0, (millis + 999) / 1000));
+    }
+}
@@ -0,0 +1,153 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request factory that aborts any request still running after its total deadline.
+ * Connect and read timeouts only bound individual socket operations, so a server that
+ * trickles bytes could otherwise hold the calling thread forever.
+ * The deadline is shortened to the run's own (see {@link CallDeadline}) when that is sooner,
+ * and cancelling the run (see {@link RunCancellation}) aborts the request immediately.
+ */
+public class DeadlineHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    // Hands the abort timer from postProcessHttpRequest to createRequest, which runs it on the same thread
+    private static final ThreadLocal<ScheduledFuture<?>> SCHEDULED_ABORT = new ThreadLocal<>();
+
+    private final Duration deadline;
+    private final ScheduledExecutorService timer;
+
+    public DeadlineHttpRequestFactory(HttpClient httpClient, Duration deadline, ScheduledExecutorService timer) {
+        super(httpClient);
+        this.deadline = deadline;
+        this.timer = timer;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request;
+        ScheduledFuture<?> abort;
+        try {
+            request = super.createRequest(uri, httpMethod);
+        } finally {
+            abort = SCHEDULED_ABORT.get();
+            SCHEDULED_ABORT.remove();
+        }
+        return abort != null ? new DeadlineRequest(request, abort) : request;
+    }
+
+    @Override
+    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+        // A run with less time left than the endpoint allows is cut off at the run's deadline.
+        // The timer is cancelled once the response is closed, so finished calls don't pile up in it.
+        // A cancelled run aborts its calls straight away.
+        if (request instanceof Cancellable cancellable) {
+            SCHEDULED_ABORT.set(timer.schedule(cancellable::cancel,
+                    CallDeadline.cap(deadline).toMillis(), TimeUnit.MILLISECONDS));
+            RunCancellation.onCurrentCancel(cancellable::cancel);
+        }
+    }
+
+    /**
+     * Drops the abort timer when the exchange ends: on close of the response, or when execute fails
+     */
+    private record DeadlineRequest(ClientHttpRequest delegate, ScheduledFuture<?> abort)
+            implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            try {
+                return new DeadlineResponse(delegate.execute(), abort);
+            } catch (IOException | RuntimeException e) {
+                abort.cancel(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (delegate instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+                return;
+            }
+            try {
+                body.writeTo(delegate.getBody());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return delegate.getAttributes();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+
+    private record DeadlineResponse(ClientHttpResponse delegate, ScheduledFuture<?> abort) implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            abort.cancel(false);
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Pooled keep-alive HTTP clients for the Python service.
+ * Generate and execute get separate pools so long browser runs can't starve AI generation.
+ * Each may list several instances; {@link PythonEndpointPool} picks one per call.
+ */
+@Configuration
+@EnableConfigurationProperties(PythonServiceProperties.class)
+public class PythonClientConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService pythonDeadlineTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+                .name("python-deadline-", 0).daemon(true).factory());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    @Bean
+    public RestTemplate generateRestTemplate(PythonServiceProperties properties, MeterRegistry registry,
+                                             ScheduledExecutorService pythonDeadlineTimer) {
+        return buildRestTemplate("python-generate", properties.getGenerate(), registry, pythonDeadlineTimer);
+    }
+
+    @Bean
+    public RestTemplate executeRestTemplate(PythonServiceProperties properties, MeterRegistry registry,
+                                            ScheduledExecutorService pythonDeadlineTimer) {
+        return buildRestTemplate("python-execute", properties.getExecute(), registry, pythonDeadlineTimer);
+    }
+
+    @Bean
+    public PythonEndpointPool generateEndpoints(PythonServiceProperties properties, MeterRegistry registry) {
+        return new PythonEndpointPool("python-generate", properties.getGenerate(), registry);
+    }
+
+    @Bean
+    public PythonEndpointPool executeEndpoints(PythonServiceProperties properties, MeterRegistry registry) {
+        return new PythonEndpointPool("python-execute", properties.getExecute(), registry);
+    }
+
+    private RestTemplate buildRestTemplate(String poolName, PythonServiceProperties.Endpoint endpoint,
+                                           MeterRegistry registry, ScheduledExecutorService timer) {
+        int instances = Math.max(1, endpoint.getUrls() != null ? endpoint.getUrls().size() : 0);
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(endpoint.getMaxConnections() * instances)
+                .setMaxConnPerRoute(endpoint.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(endpoint.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(endpoint.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Waiting for a pooled connection counts against the same deadline
+                        .setConnectionRequestTimeout(Timeout.of(endpoint.getDeadline()))
+                        .setResponseTimeout(Timeout.of(endpoint.getReadTimeout()))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+
+        // httpcomponents.httpclient.pool.* gauges: leased, available, pending
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, poolName).bindTo(registry);
+
+        return new RestTemplate(new DeadlineHttpRequestFactory(httpClient, endpoint.getDeadline(), timer));
+    }
+}
@@ -0,0 +1,206 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client-side balancing over the instances behind one Python endpoint.
+ *
+ * Each call leases the available node with the fewest outstanding requests (ties broken
+ * randomly). A node is ejected after {@code ejection.failure-threshold} consecutive connection
+ * errors or 5xx responses, for {@code ejection.duration} doubled per repeat ejection up to
+ * {@code ejection.max-duration}. A background check against each node's /health route takes
+ * nodes out and brings them back. If every node is down the least recently failed one is
+ * still tried, so a single-node setup behaves as before.
+ */
+public class PythonEndpointPool implements AutoCloseable {
+
+    /**
+     * One in-progress call against a node; report the outcome through {@link #release}
+     */
+    public interface Lease {
+        String url();
+
+        void release(Throwable failure);
+    }
+
+    private final String name;
+    private final List<Node> nodes = new ArrayList<>();
+    private final PythonServiceProperties.Balancing balancing;
+    private final RestTemplate healthClient;
+    private final ScheduledExecutorService healthChecker;
+
+    public PythonEndpointPool(String name, PythonServiceProperties.Endpoint endpoint, MeterRegistry registry) {
+        this.name = name;
+        this.balancing = endpoint.getBalancing();
+        List<String> urls = endpoint.getUrls() != null && !endpoint.getUrls().isEmpty()
+                ? endpoint.getUrls() : List.of(endpoint.getUrl());
+        for (String url : urls) {
+            nodes.add(new Node(url, healthUrl(url, balancing.getHealthPath()), registry));
+        }
+
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) balancing.getHealthTimeout().toMillis());
+        factory.setReadTimeout((int) balancing.getHealthTimeout().toMillis());
+        this.healthClient = new RestTemplate(factory);
+
+        this.healthChecker = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+                .name(name + "-health").daemon(true).factory());
+        long interval = balancing.getHealthInterval().toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pick a node for one call; the caller must release the lease when the call ends
+     */
+    public Lease acquire() {
+        long now = System.nanoTime();
+        Node chosen = null;
+        int ties = 0;
+        for (Node node : nodes) {
+            if (!node.isAvailable(now)) continue;
+            int outstanding = node.outstanding.get();
+            if (chosen == null || outstanding < chosen.outstanding.get()) {
+                chosen = node;
+                ties = 1;
+            } else if (outstanding == chosen.outstanding.get()
+                    && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                chosen = node;
+            }
+        }
+        if (chosen == null) {
+            // Everything is down: keep trying the node that failed longest ago rather than fail outright
+            chosen = nodes.stream().min(Comparator.comparingLong(n -> n.lastFailureNanos)).orElseThrow();
+        }
+
+        Node node = chosen;
+        node.outstanding.incrementAndGet();
+        return new Lease() {
+            @Override
+            public String url() {
+                return node.url;
+            }
+
+            @Override
+            public void release(Throwable failure) {
+                node.outstanding.decrementAndGet();
+                if (failure != null && countsAgainstNode(failure)) {
+                    node.recordFailure();
+                } else {
+                    node.recordSuccess();
+                }
+            }
+        };
+    }
+
+    /**
+     * Only transport errors and 5xx say something about the node; 4xx is the request's fault.
+     * /execute-tests answers 200 for failed, timed-out and cancelled tests, so a slow target site
+     * never counts against the node that tested it.
+     */
+    private static boolean countsAgainstNode(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof ResourceAccessException || t instanceof HttpServerErrorException
+                    || t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkHealth() {
+        for (Node node : nodes) {
+            boolean healthy;
+            try {
+                healthy = healthClient.getForEntity(node.healthUrl, String.class).getStatusCode().is2xxSuccessful();
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (healthy != node.healthy) {
+                System.out.println((healthy ? "✅ " : "⚠️ ") + name + " node " + node.url
+                        + (healthy ? " is healthy again" : " failed its health check"));
+            }
+            node.healthy = healthy;
+        }
+    }
+
+    private static String healthUrl(String endpointUrl, String healthPath) {
+        URI uri = URI.create(endpointUrl);
+        return uri.getScheme() + "://" + uri.getAuthority() + healthPath;
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+    }
+
+    private class Node {
+        final String url;
+        final String healthUrl;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final Counter ejections;
+        volatile boolean healthy = true;
+        volatile long ejectedUntilNanos;
+        volatile long lastFailureNanos;
+        int consecutiveFailures; // guarded by this
+        int consecutiveEjections; // guarded by this
+
+        Node(String url, String healthUrl, MeterRegistry registry) {
+            this.url = url;
+            this.healthUrl = healthUrl;
+            this.ejectedUntilNanos = System.nanoTime();
+            Gauge.builder("test.python.endpoint.outstanding", outstanding, AtomicInteger::get)
+                    .description("Requests in progress against one Python node")
+                    .tags("pool", name, "url", url)
+                    .register(registry);
+            Gauge.builder("test.python.endpoint.available", this, n -> n.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .tags("pool", name, "url", url)
+                    .register(registry);
+            this.ejections = Counter.builder("test.python.endpoint.ejections")
+                    .tags("pool", name, "url", url)
+                    .register(registry);
+        }
+
+        boolean isAvailable(long now) {
+            return healthy && now - ejectedUntilNanos >= 0;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            consecutiveEjections = 0;
+        }
+
+        synchronized void recordFailure() {
+            lastFailureNanos = System.nanoTime();
+            if (++consecutiveFailures < balancing.getEjection().getFailureThreshold()) return;
+
+            Duration base = balancing.getEjection().getDuration();
+            Duration max = balancing.getEjection().getMaxDuration();
+            Duration ejection = base.multipliedBy(1L << Math.min(consecutiveEjections, 10));
+            if (ejection.compareTo(max) > 0) ejection = max;
+
+            consecutiveFailures = 0;
+            consecutiveEjections++;
+            ejectedUntilNanos = lastFailureNanos + ejection.toNanos();
+            ejections.increment();
+            System.out.println("🚫 Ejected " + name + " node " + url + " for " + ejection.toSeconds() + "s");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection settings for the Python Flask service, one block per endpoint
+ */
+@Data
+@ConfigurationProperties(prefix = "python")
+public class PythonServiceProperties {
+
+    private Endpoint generate = new Endpoint(
+            "http://localhost:5000/generate-tests",
+            Duration.ofSeconds(5), Duration.ofSeconds(120), Duration.ofSeconds(180), 50);
+
+    private Endpoint execute = new Endpoint(
+            "http://localhost:5000/execute-tests",
+            Duration.ofSeconds(5), Duration.ofSeconds(330), Duration.ofSeconds(420), 50);
+
+    @Data
+    @NoArgsConstructor
+    public static class Endpoint {
+        private String url;
+        private List<String> urls = new ArrayList<>(); // several instances; overrides url when set
+        private Duration connectTimeout; // TCP connect
+        private Duration readTimeout;    // max silence between bytes
+        private Duration deadline;       // whole call, including waiting for a pooled connection
+        private int maxConnections;      // per instance
+        private Balancing balancing = new Balancing();
+
+        public Endpoint(String url, Duration connectTimeout, Duration readTimeout, Duration deadline, int maxConnections) {
+            this.url = url;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.deadline = deadline;
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    @Data
+    public static class Balancing {
+        private String healthPath = "/health";
+        private Duration healthInterval = Duration.ofSeconds(10);
+        private Duration healthTimeout = Duration.ofSeconds(2);
+        private Ejection ejection = new Ejection();
+    }
+
+    @Data
+    public static class Ejection {
+        private int failureThreshold = 3;             // consecutive failures before a node is ejected
+        private Duration duration = Duration.ofSeconds(30);
+        private Duration maxDuration = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,105 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation handle of one test run.
+ *
+ * Outbound calls made inside {@link #within} are registered by {@link DeadlineHttpRequestFactory}
+ * and aborted on {@link #cancel}, so a cancelled run stops waiting on the Python service at once.
+ * Further clean-up (telling the executor node to stop its browser) is added with {@link #onCancel}.
+ */
+public final class RunCancellation {
+
+    private static final ThreadLocal<RunCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> onCancel = new ArrayList<>(); // guarded by this
+    private volatile boolean cancelled;
+    private volatile boolean handedOff;
+
+    /**
+     * Run {@code call} with its outbound requests tied to this run
+     */
+    public <T> T within(Supplier<T> call) {
+        RunCancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Whether the run the current thread is working for has been cancelled
+     */
+    public static boolean isCurrentCancelled() {
+        RunCancellation current = CURRENT.get();
+        return current != null && current.isCancelled();
+    }
+
+    /**
+     * Register an action on the current thread's run, if any
+     */
+    public static void onCurrentCancel(Runnable action) {
+        RunCancellation current = CURRENT.get();
+        if (current != null) current.onCancel(action);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Run {@code action} on cancellation, or right away if the run is already cancelled
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                onCancel.add(action);
+                return;
+            }
+        }
+        runQuietly(action);
+    }
+
+    /**
+     * Whether the run was stopped so another node can redo it; it must not store a result then
+     */
+    public boolean isHandedOff() {
+        return handedOff;
+    }
+
+    /**
+     * Stop the run because its work was given back to the queue (e.g. on shutdown)
+     */
+    public void handOff() {
+        handedOff = true;
+        cancel();
+    }
+
+    /**
+     * Mark the run cancelled and abort its outbound calls; later calls are no-ops
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            actions = List.copyOf(onCancel);
+            onCancel.clear();
+        }
+        actions.forEach(RunCancellation::runQuietly);
+    }
+
+    private static void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            System.err.println("Cancellation action failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.nikhilpanwar.Ai_saas_testing.Schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestScheduleServiceTest {
+
+    private static final long HOUR = 3600;
+
+    @Test
+    void slotsAreOneIntervalApartAndAfterTheGivenTime() {
+        String id = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 12, 0, 30);
+
+        LocalDateTime first = TestScheduleService.nextSlot(id, HOUR, now);
+        assertTrue(first.isAfter(now));
+        assertFalse(first.isAfter(now.plusSeconds(HOUR)));
+
+        // Same slot whatever time inside the previous interval it is computed at
+        assertEquals(first, TestScheduleService.nextSlot(id, HOUR, first.minusSeconds(1)));
+        assertEquals(first.plusSeconds(HOUR), TestScheduleService.nextSlot(id, HOUR, first));
+        assertEquals(Duration.ofSeconds(HOUR),
+                Duration.between(first, TestScheduleService.nextSlot(id, HOUR, first.plusSeconds(10))));
+    }
+
+    @Test
+    void schedulesSpreadOverTheInterval() {
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 12, 0);
+        Set<Long> minutes = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime slot = TestScheduleService.nextSlot(UUID.randomUUID().toString(), HOUR, now);
+            minutes.add(Duration.between(now, slot).toMinutes());
+        }
+        // 200 schedules created together land in most of the 60 minutes, not all at once
+        assertTrue(minutes.size() > 40, "only " + minutes.size() + " distinct minutes");
+    }
+}
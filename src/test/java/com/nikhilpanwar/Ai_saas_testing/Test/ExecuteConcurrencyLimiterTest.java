@@ -0,0 +1,101 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.nikhilpanwar.Ai_saas_testing.config.RunCancellation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecuteConcurrencyLimiterTest {
+
+    private ExecuteConcurrencyLimiter limiter(int initial) {
+        return new ExecuteConcurrencyLimiter(new SimpleMeterRegistry(), true,
+                initial, 1, 10, 0.5, 2.0, Duration.ofMillis(50));
+    }
+
+    @Test
+    void growsWhileLatencyIsFlatAndShrinksOnErrors() throws Exception {
+        ExecuteConcurrencyLimiter limiter = limiter(1);
+
+        // Sequential calls use the whole limit only while it is 1 or 2
+        for (int i = 0; i < 3; i++) {
+            limiter.execute(() -> sleep(5));
+        }
+        assertEquals(3, limiter.getLimit());
+
+        assertThrows(IllegalStateException.class, () -> limiter.execute(() -> {
+            throw new IllegalStateException("executor down");
+        }));
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void callerOverTheLimitTimesOut() throws Exception {
+        ExecuteConcurrencyLimiter limiter = limiter(1);
+
+        limiter.execute(() -> {
+            assertThrows(TimeoutException.class, () -> limiter.execute(() -> "second"));
+            return null;
+        });
+    }
+
+    @Test
+    void callsCutShortByTheRunDontShrinkTheLimit() throws Exception {
+        ExecuteConcurrencyLimiter limiter = limiter(4);
+
+        Instant deadline = Instant.now().plusMillis(20);
+        assertThrows(IllegalStateException.class, () -> limiter.execute(deadline, null, () -> {
+            sleep(40);
+            throw new IllegalStateException("aborted at the deadline");
+        }));
+        assertThrows(RunCancelledException.class, () -> limiter.execute(null, new RunCancellation(), () -> {
+            throw new RunCancelledException("cancelled");
+        }));
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void slotWaitEndsAtTheRunsDeadlineOrCancel() throws Exception {
+        ExecuteConcurrencyLimiter limiter = new ExecuteConcurrencyLimiter(new SimpleMeterRegistry(), true,
+                1, 1, 10, 0.5, 2.0, Duration.ofSeconds(30));
+
+        limiter.execute(() -> {
+            long start = System.nanoTime();
+            assertThrows(DeadlineExceededException.class,
+                    () -> limiter.execute(Instant.now().plusMillis(50), null, () -> "second"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+            RunCancellation run = new RunCancellation();
+            CompletableFuture<Throwable> waiter = CompletableFuture.supplyAsync(() -> {
+                try {
+                    limiter.execute(null, run, () -> "third");
+                    return null;
+                } catch (Throwable t) {
+                    return t;
+                }
+            });
+            sleep(50);
+            run.cancel();
+            assertInstanceOf(RunCancelledException.class, waiter.join());
+            return null;
+        });
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "ok";
+    }
+}
@@ -0,0 +1,84 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionResponseParserTest {
+
+    private final ExecutionResponseParser parser = new ExecutionResponseParser(new ObjectMapper());
+
+    @TempDir
+    Path screenshotDir;
+
+    @Test
+    void parsesFieldsAndStreamsScreenshotsToDisk() throws Exception {
+        byte[] png = new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3};
+        String b64 = Base64.getEncoder().encodeToString(png);
+        String json = """
+                {
+                  "browser": "chromium",
+                  "bugs": [{"bugId": "bug_1", "title": "Broken link", "description": "404",
+                            "severity": "high", "steps_to_reproduce": ["1. open"]}],
+                  "duration": "4s",
+                  "logs": ["▶ loads — passed", "🏁 done"],
+                  "recommendations": [{"recommendationId": "rec_1", "title": "Compress images",
+                                       "impact": "HIGH", "category": "performance"}],
+                  "results": {"suites": [{"specs": []}]},
+                  "screenshots": [{"b64": "%s", "filename": "../home.png"}, {"filename": "no-data.png"}],
+                  "status": "failed",
+                  "success": true
+                }
+                """.formatted(b64);
+
+        ExecutionResponse response = parser.parse(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), screenshotDir);
+
+        assertEquals(Boolean.TRUE, response.getSuccess());
+        assertEquals("failed", response.getStatus());
+        assertEquals("4s", response.getDuration());
+        assertEquals(2, response.getLogs().size());
+        assertEquals("bug_1", response.getBugs().get(0).getBugId());
+        assertEquals("HIGH", response.getRecommendations().get(0).getImpact());
+
+        assertEquals(1, response.getScreenshots().size());
+        assertEquals("/uploads/screenshots/home.png", response.getScreenshots().get(0).getUrl());
+        assertArrayEquals(png, Files.readAllBytes(screenshotDir.resolve("home.png")));
+        assertTrue(response.getScreenshotErrors().isEmpty());
+        try (var files = Files.list(screenshotDir)) {
+            assertEquals(1, files.count()); // no leftover .part files
+        }
+    }
+
+    @Test
+    void unusableScreenshotNamesFallBackToRandomOnes() {
+        assertEquals("shot.png", ExecutionResponseParser.safeFileName("..\\..\\shot.png"));
+        assertEquals("shot.png", ExecutionResponseParser.safeFileName("/tmp/shot.png"));
+        for (String name : new String[]{null, "", "/", "..", "a/..", "...", "dir/"}) {
+            String safe = ExecutionResponseParser.safeFileName(name);
+            assertTrue(safe.endsWith(".png") && !safe.contains("/") && safe.length() > 30, name + " -> " + safe);
+        }
+    }
+
+    @Test
+    void truncatedScreenshotLeavesNoPartFile() throws Exception {
+        String b64 = Base64.getEncoder().encodeToString(new byte[4096]);
+        String json = """
+                {"status": "passed", "screenshots": [{"filename": "home.png", "b64": "%s
+                """.formatted(b64.substring(0, 2000)); // the stream ends in the middle of the base64 value
+
+        assertThrows(Exception.class, () -> parser.parse(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), screenshotDir));
+        try (var files = Files.list(screenshotDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerateCircuitBreakerTest {
+
+    @Test
+    void opensOnFailuresAndClosesAfterSuccessfulProbe() throws Exception {
+        GenerateCircuitBreaker breaker = new GenerateCircuitBreaker(new SimpleMeterRegistry(), true,
+                10, 4, 0.5, Duration.ofMillis(50), 1);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(GenerateCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(GenerateCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(GenerateCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission(), "only one probe at a time");
+
+        breaker.onSuccess();
+        assertEquals(GenerateCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void failedProbeReopens() throws Exception {
+        GenerateCircuitBreaker breaker = new GenerateCircuitBreaker(new SimpleMeterRegistry(), true,
+                10, 1, 0.5, Duration.ofMillis(20), 1);
+
+        breaker.onFailure();
+        Thread.sleep(30);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+        assertEquals(GenerateCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+}
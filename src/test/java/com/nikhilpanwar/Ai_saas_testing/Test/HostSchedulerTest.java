@@ -0,0 +1,61 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostSchedulerTest {
+
+    private final HostScheduler scheduler = new HostScheduler(null, new SimpleMeterRegistry(), true, false,
+            2, Duration.ofMillis(100), Duration.ofMillis(50), Duration.ofMinutes(1));
+
+    @AfterEach
+    void stop() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void limitsConcurrencyAndSpacingPerHostOnly() throws Exception {
+        HostScheduler.Permit first = scheduler.tryAcquire("https://Shop.example.com/product/1");
+        assertNotNull(first);
+        // Same host, within the spacing
+        assertNull(scheduler.tryAcquire("https://shop.example.com/product/2"));
+        // Other hosts are not held up
+        assertNotNull(scheduler.tryAcquire("https://other.example.com/"));
+
+        Thread.sleep(120);
+        HostScheduler.Permit second = scheduler.tryAcquire("https://shop.example.com/product/2");
+        assertNotNull(second);
+
+        Thread.sleep(120);
+        assertNull(scheduler.tryAcquire("https://shop.example.com/product/3"), "two runs already in flight");
+        assertTrue(scheduler.millisUntilFree("https://shop.example.com/") >= 1000);
+        assertThrows(AdmissionRejectedException.class, () -> scheduler.acquire("https://shop.example.com/product/3"));
+
+        first.close();
+        try (HostScheduler.Permit third = scheduler.acquire("https://shop.example.com/product/3")) {
+            assertNotNull(third);
+        }
+        second.close();
+    }
+
+    @Test
+    void retryLaterRunsOnceTheSpacingHasPassed() throws Exception {
+        HostScheduler.Permit first = scheduler.tryAcquire("https://shop.example.com/");
+        assertNotNull(first);
+
+        CountDownLatch retried = new CountDownLatch(1);
+        scheduler.retryLater("https://shop.example.com/", retried::countDown);
+        assertTrue(retried.await(2, TimeUnit.SECONDS));
+        try (HostScheduler.Permit second = scheduler.tryAcquire("https://shop.example.com/")) {
+            assertNotNull(second);
+        }
+        first.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightTestRegistryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ScriptCache scriptCache = new ScriptCache(new ObjectMapper(), registry, true, 10, Duration.ofHours(1));
+    private final InFlightTestRegistry inFlight = new InFlightTestRegistry(registry);
+
+    private String keyFor(TestRequestDTO request) {
+        return InFlightTestRegistry.keyFor(scriptCache.keyFor(request), request);
+    }
+
+    private static TestRequestDTO request(TestRequestDTO.Credentials credentials) {
+        return new TestRequestDTO("https://shop.example.com/login", credentials, Map.of("flow", "login"), false, null);
+    }
+
+    @Test
+    void requestsDifferingOnlyByCredentialsDontShareARun() throws Exception {
+        TestRequestDTO alice = request(new TestRequestDTO.Credentials("alice", "secret-a"));
+        TestRequestDTO bob = request(new TestRequestDTO.Credentials("bob", "secret-b"));
+        TestRequestDTO anonymous = request(null);
+        assertNotEquals(keyFor(alice), keyFor(bob));
+        assertNotEquals(keyFor(alice), keyFor(anonymous));
+        assertEquals(keyFor(alice), keyFor(request(new TestRequestDTO.Credentials("alice", "secret-a"))));
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger pipelines = new AtomicInteger();
+        CompletableFuture<TestResultDTO> first = CompletableFuture.supplyAsync(() -> inFlight.execute(keyFor(alice), "a",
+                () -> {
+                    pipelines.incrementAndGet();
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    return TestResultDTO.builder().id("a").script("alice's run").build();
+                }));
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+
+        // Runs while alice's is still in flight, so it would have attached to it under a shared key
+        TestResultDTO second = inFlight.execute(keyFor(bob), "b", () -> {
+            pipelines.incrementAndGet();
+            return TestResultDTO.builder().id("b").script("bob's run").build();
+        });
+        release.countDown();
+
+        assertEquals("b", second.getId());
+        assertEquals("a", first.get(2, TimeUnit.SECONDS).getId());
+        assertEquals(2, pipelines.get());
+        assertEquals(0.0, registry.get("test.pipeline.coalesced").counter().count());
+    }
+}
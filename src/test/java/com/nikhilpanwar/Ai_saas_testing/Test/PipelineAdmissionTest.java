@@ -0,0 +1,58 @@
+package com.nikhilpanwar.Ai_saas_testing.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineAdmissionTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private PipelineAdmission admission(int maxInFlight, int maxQueue, Duration maxWait) {
+        return new PipelineAdmission(new PipelineMetrics(registry), null, registry,
+                false, maxInFlight, 4, maxQueue, maxWait);
+    }
+
+    @Test
+    void rejectsSyncRunWhenSlotsAndQueueAreFull() throws Exception {
+        PipelineAdmission admission = admission(1, 0, Duration.ofSeconds(5));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> admission.admitSync(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        }));
+        holder.start();
+        running.await();
+
+        AdmissionRejectedException rejected =
+                assertThrows(AdmissionRejectedException.class, () -> admission.admitSync(() -> "second"));
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        assertEquals(1.0, registry.get("test.admission.rejected").tag("path", "sync").counter().count());
+
+        release.countDown();
+        holder.join();
+        assertEquals("third", admission.admitSync(() -> "third"));
+    }
+
+    @Test
+    void rejectsAsyncSubmissionOnceBacklogIsFull() {
+        PipelineAdmission admission = admission(1, 2, Duration.ofSeconds(1));
+
+        admission.admitAsync();
+        admission.admitAsync();
+        assertThrows(AdmissionRejectedException.class, admission::admitAsync);
+
+        admission.asyncFinished();
+        assertDoesNotThrow(admission::admitAsync);
+    }
+}
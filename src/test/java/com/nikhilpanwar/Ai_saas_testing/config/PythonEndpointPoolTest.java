@@ -0,0 +1,74 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PythonEndpointPoolTest {
+
+    private final List<HttpServer> stubs = new ArrayList<>();
+    private PythonEndpointPool pool;
+
+    @AfterEach
+    void stop() {
+        if (pool != null) pool.close();
+        stubs.forEach(s -> s.stop(0));
+    }
+
+    @Test
+    void prefersLeastBusyNodeAndEjectsFailingOnes() throws Exception {
+        String a = stub() + "/execute-tests";
+        String b = stub() + "/execute-tests";
+        pool = pool(a, b);
+
+        PythonEndpointPool.Lease first = pool.acquire();
+        PythonEndpointPool.Lease second = pool.acquire();
+        assertNotEquals(first.url(), second.url());
+        first.release(null);
+        second.release(null);
+
+        // Three connection failures on one node take it out of rotation
+        for (int i = 0; i < 3; i++) {
+            PythonEndpointPool.Lease lease = pool.acquire();
+            while (!lease.url().equals(a)) {
+                lease.release(null);
+                lease = pool.acquire();
+            }
+            lease.release(new ResourceAccessException("refused"));
+        }
+        for (int i = 0; i < 10; i++) {
+            PythonEndpointPool.Lease lease = pool.acquire();
+            assertEquals(b, lease.url());
+            lease.release(null);
+        }
+    }
+
+    private PythonEndpointPool pool(String... urls) {
+        PythonServiceProperties.Endpoint endpoint = new PythonServiceProperties.Endpoint(
+                null, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1), 5);
+        endpoint.setUrls(List.of(urls));
+        endpoint.getBalancing().getEjection().setDuration(Duration.ofMinutes(1));
+        return new PythonEndpointPool("test", endpoint, new SimpleMeterRegistry());
+    }
+
+    private String stub() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/health", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        stubs.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+}
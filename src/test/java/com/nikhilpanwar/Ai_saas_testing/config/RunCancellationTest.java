@@ -0,0 +1,40 @@
+package com.nikhilpanwar.Ai_saas_testing.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunCancellationTest {
+
+    @Test
+    void cancelRunsRegisteredActionsOnce() {
+        RunCancellation run = new RunCancellation();
+        AtomicInteger aborted = new AtomicInteger();
+
+        run.within(() -> {
+            RunCancellation.onCurrentCancel(aborted::incrementAndGet);
+            assertFalse(RunCancellation.isCurrentCancelled());
+            return null;
+        });
+        run.cancel();
+        run.cancel();
+        assertEquals(1, aborted.get());
+
+        // Registered after the fact: runs straight away
+        run.onCancel(aborted::incrementAndGet);
+        assertEquals(2, aborted.get());
+        assertTrue(run.within(RunCancellation::isCurrentCancelled));
+    }
+
+    @Test
+    void noCurrentRunOutsideWithin() {
+        RunCancellation run = new RunCancellation();
+        run.cancel();
+        run.within(() -> null);
+
+        assertFalse(RunCancellation.isCurrentCancelled());
+        RunCancellation.onCurrentCancel(() -> fail("Not tied to any run"));
+    }
+}